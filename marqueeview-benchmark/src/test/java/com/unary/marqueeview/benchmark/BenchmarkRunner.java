@@ -0,0 +1,160 @@
+/*
+ * Copyright 2021 Christopher Zaborsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.unary.marqueeview.benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * A small benchmark harness that runs inside the Robolectric sandbox, where JMH cannot fork. Each
+ * operation is warmed up and then timed one call at a time. Results are written in the JMH JSON
+ * format so the same tools can track them.
+ */
+final class BenchmarkRunner {
+
+    private static final String OUTPUT = "benchmark.output";
+    private static final String ITERATIONS = "benchmark.iterations";
+    private static final int DEFAULT_ITERATIONS = 2000;
+    private static final double[] PERCENTILES = {0, 50, 90, 95, 99, 100};
+
+    private final String mClassName;
+    private final int mIterations;
+    private final ArrayList<String> mResults;
+
+    /**
+     * Create a runner for the benchmarks of a class. The iteration count can be changed with the
+     * "benchmark.iterations" system property.
+     *
+     * @param benchmarkClass Class containing the benchmarks.
+     */
+    BenchmarkRunner(Class<?> benchmarkClass) {
+        mClassName = benchmarkClass.getName();
+        mIterations = Integer.getInteger(ITERATIONS, DEFAULT_ITERATIONS);
+        mResults = new ArrayList<>();
+    }
+
+    /**
+     * Time the operation. It is run as many times as it is measured beforehand to warm up.
+     *
+     * @param name      Name of the benchmark.
+     * @param operation Operation to time.
+     * @return Average time in nanoseconds.
+     */
+    double run(String name, Runnable operation) {
+        return run(name, mIterations, operation);
+    }
+
+    /**
+     * Time the operation for the given number of iterations. It is run as many times beforehand to
+     * warm up.
+     *
+     * @param name       Name of the benchmark.
+     * @param iterations Number of timed calls.
+     * @param operation  Operation to time.
+     * @return Average time in nanoseconds.
+     */
+    double run(String name, int iterations, Runnable operation) {
+        for (int i = 0; i < iterations; i++) {
+            operation.run();
+        }
+
+        long[] times = new long[iterations];
+        double total = 0;
+
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            operation.run();
+            times[i] = System.nanoTime() - start;
+            total += times[i];
+        }
+
+        Arrays.sort(times);
+
+        double mean = total / iterations;
+        double variance = 0;
+
+        for (long time : times) {
+            variance += (time - mean) * (time - mean);
+        }
+
+        double error = iterations > 1 ? 1.96 * Math.sqrt(variance / (iterations - 1)) / Math.sqrt(iterations) : 0;
+
+        StringBuilder percentiles = new StringBuilder();
+
+        for (double percentile : PERCENTILES) {
+            int index = (int) Math.min(iterations - 1, Math.ceil(percentile / 100 * iterations) - 1);
+
+            percentiles.append(percentiles.length() > 0 ? ", " : "")
+                    .append(String.format(Locale.US, "\"%.1f\": %d", percentile, times[Math.max(0, index)]));
+        }
+
+        mResults.add(String.format(Locale.US, "  {\n"
+                        + "    \"benchmark\": \"%s.%s\",\n"
+                        + "    \"mode\": \"avgt\",\n"
+                        + "    \"threads\": 1,\n"
+                        + "    \"forks\": 0,\n"
+                        + "    \"warmupIterations\": %d,\n"
+                        + "    \"measurementIterations\": %d,\n"
+                        + "    \"primaryMetric\": {\n"
+                        + "      \"score\": %.3f,\n"
+                        + "      \"scoreError\": %.3f,\n"
+                        + "      \"scoreUnit\": \"ns/op\",\n"
+                        + "      \"scorePercentiles\": {%s}\n"
+                        + "    }\n"
+                        + "  }",
+                mClassName, name, iterations, iterations, mean, error, percentiles));
+
+        return mean;
+    }
+
+    /**
+     * Write the results to the file in the "benchmark.output" system property. Nothing is written if
+     * it is not set.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    void write() throws IOException {
+        String output = System.getProperty(OUTPUT);
+        if (output == null) return;
+
+        File file = new File(output);
+        File parent = file.getParentFile();
+
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent);
+        }
+
+        Writer writer = new FileWriter(file);
+
+        try {
+            writer.write("[\n");
+
+            for (int i = 0; i < mResults.size(); i++) {
+                writer.write(mResults.get(i));
+                writer.write(i < mResults.size() - 1 ? ",\n" : "\n");
+            }
+
+            writer.write("]\n");
+        } finally {
+            writer.close();
+        }
+    }
+}
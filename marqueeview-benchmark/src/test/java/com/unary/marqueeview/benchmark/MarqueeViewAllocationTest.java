@@ -0,0 +1,376 @@
+/*
+ * Copyright 2021 Christopher Zaborsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.unary.marqueeview.benchmark;
+
+import android.animation.ValueAnimator;
+import android.app.Activity;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.view.Choreographer;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import com.unary.marqueeview.MarqueeGroup;
+import com.unary.marqueeview.MarqueeTicker;
+import com.unary.marqueeview.MarqueeView;
+import com.unary.marqueeview.TouchMarqueeView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a steady-state frame does not allocate. Frames are driven through the default
+ * animator, the shared ticker, a group and the touch scrubbing and fling of TouchMarqueeView, and
+ * each one draws the views. Allocations are counted with the HotSpot thread allocation counter
+ * after a warm up.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+@Config(sdk = 30)
+public class MarqueeViewAllocationTest {
+
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 64;
+    private static final int WARM_UP_FRAMES = 2000;
+    private static final int FRAMES = 5000;
+    private static final long FRAME_NANOS = 16000000;
+    private static final int DRAG_MOVES = 20;
+    private static final int DRAG_STEP = 8; // px
+
+    // An object is at least 16 bytes, so allocating once every 32 frames or more often fails. The
+    // rest is slack for one-off growth of buffers inside the Robolectric graphics bridge.
+    private static final long ALLOWED_BYTES = FRAMES / 32 * 16;
+
+    private static final String LONG_TEXT = "The quick brown fox jumps over the lazy dog while the marquee "
+            + "keeps on scrolling far past the edge of the view and back around again. ";
+    private static final String RTL_TEXT = "השועל החום "
+            + "המהיר קופץ מעל "
+            + "הכלב העצלן שוב "
+            + "ושוב לאורך כל "
+            + "המסך והלאה. ";
+
+    private Activity mActivity;
+    private FrameLayout mContent;
+    private Canvas mCanvas;
+    private long mFrameTime;
+
+    @Before
+    public void setUp() {
+        mActivity = Robolectric.buildActivity(Activity.class).setup().get();
+        mContent = new FrameLayout(mActivity);
+        mActivity.setContentView(mContent);
+        mCanvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+        mFrameTime = System.nanoTime();
+    }
+
+    @Test
+    public void marqueeView_frameDoesNotAllocate() {
+        assertFramesDoNotAllocate(new MarqueeView(mActivity), LONG_TEXT);
+    }
+
+    @Test
+    public void marqueeView_rtlFrameDoesNotAllocate() {
+        assertFramesDoNotAllocate(new MarqueeView(mActivity), RTL_TEXT);
+    }
+
+    @Test
+    public void touchMarqueeView_frameDoesNotAllocate() {
+        assertFramesDoNotAllocate(new TouchMarqueeView(mActivity), LONG_TEXT);
+    }
+
+    @Test
+    public void marqueeTicker_frameDoesNotAllocate() {
+        MarqueeView view = new MarqueeView(mActivity);
+        view.setSharedTicker(true);
+        attach(view, LONG_TEXT);
+
+        MarqueeView[] views = {view};
+        tickFrames(views, WARM_UP_FRAMES);
+
+        long overhead = getCounterOverhead();
+        long start = getAllocatedBytes();
+        tickFrames(views, FRAMES);
+
+        assertAllocated(getAllocatedBytes() - start - overhead);
+    }
+
+    @Test
+    public void marqueeTicker_pausedViewLeavesTicker() {
+        PausableMarqueeView view = new PausableMarqueeView(mActivity);
+        view.setSharedTicker(true);
+        attach(view, LONG_TEXT);
+
+        MarqueeTicker ticker = MarqueeTicker.getInstance();
+        MarqueeView[] views = {view};
+        tickFrames(views, 10);
+
+        int count = ticker.getViewCount();
+        assertTrue(count > 0);
+
+        view.pause();
+        assertEquals(count - 1, ticker.getViewCount());
+
+        tickFrames(views, 10);
+        assertEquals(count - 1, ticker.getViewCount());
+
+        view.resume();
+        assertEquals(count, ticker.getViewCount());
+    }
+
+    @Test
+    public void marqueeGroup_frameDoesNotAllocate() {
+        MarqueeView first = new MarqueeView(mActivity);
+        MarqueeView second = new MarqueeView(mActivity);
+        attach(first, LONG_TEXT);
+        attach(second, RTL_TEXT);
+
+        MarqueeGroup group = new MarqueeGroup();
+        group.add(first);
+        group.add(second, WIDTH / 2f);
+
+        MarqueeView[] views = {first, second};
+        tickFrames(views, WARM_UP_FRAMES);
+
+        long overhead = getCounterOverhead();
+        long start = getAllocatedBytes();
+        tickFrames(views, FRAMES);
+
+        assertAllocated(getAllocatedBytes() - start - overhead);
+    }
+
+    @Test
+    public void touchMarqueeView_dragAndFlingDoNotAllocate() {
+        TouchMarqueeView view = new TouchMarqueeView(mActivity);
+        attach(view, LONG_TEXT);
+
+        // Events are made up front and reused for every gesture
+        MotionEvent[] gesture = createGesture();
+        MarqueeView[] views = {view};
+        dragAndFling(view, views, gesture, WARM_UP_FRAMES);
+
+        long overhead = getCounterOverhead();
+        long start = getAllocatedBytes();
+        dragAndFling(view, views, gesture, FRAMES);
+
+        assertAllocated(getAllocatedBytes() - start - overhead);
+    }
+
+    /**
+     * Drive frames of the view and check that none of them allocate once warmed up.
+     *
+     * @param view View to check.
+     * @param text Text long enough to scroll.
+     */
+    private void assertFramesDoNotAllocate(MarqueeView view, String text) {
+        view.setAutoStart(false);
+        view.setText(text);
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, WIDTH, HEIGHT);
+
+        assertTrue(view.isScrollable());
+
+        ValueAnimator animator = (ValueAnimator) view.getTextAnimator();
+        long duration = animator.getDuration();
+
+        drawFrames(view, animator, duration, WARM_UP_FRAMES);
+
+        long overhead = getCounterOverhead();
+        long start = getAllocatedBytes();
+        drawFrames(view, animator, duration, FRAMES);
+
+        assertAllocated(getAllocatedBytes() - start - overhead);
+    }
+
+    /**
+     * Attach the view to the window and lay it out with the text. Auto pause is turned off so that
+     * the state of the test window cannot pause it.
+     *
+     * @param view View to attach.
+     * @param text Text long enough to scroll.
+     */
+    private void attach(MarqueeView view, String text) {
+        view.setAutoPause(false);
+        view.setText(text);
+        mContent.addView(view, new FrameLayout.LayoutParams(WIDTH, HEIGHT));
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, WIDTH, HEIGHT);
+
+        assertTrue(view.isScrollable());
+    }
+
+    /**
+     * Send frames from the shared ticker and draw the views for each. The ticker is called directly
+     * with the frame time and its callback is taken back, so the Choreographer queue never grows.
+     *
+     * @param views  Views to draw.
+     * @param frames Number of frames.
+     */
+    private void tickFrames(MarqueeView[] views, int frames) {
+        MarqueeTicker ticker = MarqueeTicker.getInstance();
+        Choreographer choreographer = Choreographer.getInstance();
+
+        for (int i = 0; i < frames; i++) {
+            mFrameTime += FRAME_NANOS;
+            ticker.doFrame(mFrameTime);
+            choreographer.removeFrameCallback(ticker);
+
+            for (MarqueeView view : views) {
+                view.draw(mCanvas);
+            }
+        }
+    }
+
+    /**
+     * Create a drag to the left that is fast enough to fling when released.
+     *
+     * @return Down, move and up events.
+     */
+    private static MotionEvent[] createGesture() {
+        MotionEvent[] gesture = new MotionEvent[DRAG_MOVES + 2];
+        float x = WIDTH - 1;
+        float y = HEIGHT / 2f;
+
+        gesture[0] = MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, x, y, 0);
+
+        for (int i = 1; i <= DRAG_MOVES; i++) {
+            gesture[i] = MotionEvent.obtain(0, i * 16, MotionEvent.ACTION_MOVE, x - i * DRAG_STEP, y, 0);
+        }
+
+        gesture[DRAG_MOVES + 1] = MotionEvent.obtain(0, (DRAG_MOVES + 1) * 16, MotionEvent.ACTION_UP,
+                x - (DRAG_MOVES + 1) * DRAG_STEP, y, 0);
+
+        return gesture;
+    }
+
+    /**
+     * Drag the view and let it fling until it hands back to the scroll, drawing every frame. This
+     * repeats until the number of frames has been drawn.
+     *
+     * @param view    View to touch.
+     * @param views   The same view, for the ticker.
+     * @param gesture Events of one drag.
+     * @param frames  Number of frames.
+     */
+    private void dragAndFling(TouchMarqueeView view, MarqueeView[] views, MotionEvent[] gesture, int frames) {
+        int frame = 0;
+
+        while (frame < frames) {
+            for (MotionEvent event : gesture) {
+                view.dispatchTouchEvent(event);
+                view.draw(mCanvas);
+                frame++;
+            }
+
+            assertTrue(view.isFlinging());
+
+            while (view.isFlinging() && frame < frames) {
+                tickFrames(views, 1);
+                frame++;
+            }
+        }
+
+        // Hand back before the next run
+        while (view.isFlinging()) {
+            tickFrames(views, 1);
+        }
+
+        assertFalse(view.isFlinging());
+    }
+
+    /**
+     * Check the bytes allocated while drawing the frames.
+     *
+     * @param allocated Allocated bytes.
+     */
+    private static void assertAllocated(long allocated) {
+        assertTrue("Allocated " + allocated + " bytes over " + FRAMES + " frames", allocated <= ALLOWED_BYTES);
+    }
+
+    /**
+     * Get the cost of reading the allocation counter itself.
+     *
+     * @return Allocated bytes.
+     */
+    private static long getCounterOverhead() {
+        long overhead = getAllocatedBytes();
+        return getAllocatedBytes() - overhead;
+    }
+
+    /**
+     * Advance the animator and draw the view for each frame. Frames are 16ms apart and wrap around
+     * the animator duration.
+     *
+     * @param view     View to draw.
+     * @param animator Default animator of the view.
+     * @param duration Duration of one scrolling period.
+     * @param frames   Number of frames.
+     */
+    private void drawFrames(MarqueeView view, ValueAnimator animator, long duration, int frames) {
+        for (int i = 0; i < frames; i++) {
+            animator.setCurrentPlayTime(i * 16L % duration);
+            view.draw(mCanvas);
+        }
+    }
+
+    /**
+     * A marquee that can be paused and resumed from the test.
+     */
+    private static final class PausableMarqueeView extends MarqueeView {
+
+        /**
+         * Create the view.
+         *
+         * @param activity Activity of the view.
+         */
+        PausableMarqueeView(Activity activity) {
+            super(activity);
+        }
+
+        @Override
+        protected void pause() {
+            super.pause();
+        }
+
+        @Override
+        protected void resume() {
+            super.resume();
+        }
+    }
+
+    /**
+     * Get the number of bytes allocated by this thread so far.
+     *
+     * @return Allocated bytes.
+     */
+    private static long getAllocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
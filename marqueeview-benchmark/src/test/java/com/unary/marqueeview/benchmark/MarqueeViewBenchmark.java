@@ -0,0 +1,183 @@
+/*
+ * Copyright 2021 Christopher Zaborsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.unary.marqueeview.benchmark;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.unary.marqueeview.MarqueeView;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmarks for the layout and draw paths of the marquee. These run on the JVM with the native
+ * graphics of Robolectric, so no device is needed. Run them with
+ * {@code ./gradlew :marqueeview-benchmark:testDebugUnitTest} and find the results in
+ * {@code build/outputs/benchmark}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+@Config(sdk = 30)
+public class MarqueeViewBenchmark {
+
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 64;
+    private static final int INFLATED_VIEWS = 50;
+
+    private static final String SHORT_TEXT = "This space for rent...";
+    private static final String LONG_TEXT = "The quick brown fox jumps over the lazy dog while the marquee "
+            + "keeps on scrolling far past the edge of the view and back around again. ";
+    private static final String RTL_TEXT = "השועל החום "
+            + "המהיר קופץ מעל "
+            + "הכלב העצלן שוב "
+            + "ושוב לאורך כל "
+            + "המסך והלאה. ";
+
+    private static final BenchmarkRunner sRunner = new BenchmarkRunner(MarqueeViewBenchmark.class);
+
+    private Context mContext;
+    private Canvas mCanvas;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        mCanvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+    }
+
+    @AfterClass
+    public static void writeResults() throws IOException {
+        sRunner.write();
+    }
+
+    @Test
+    public void drawShortText() {
+        benchmarkDraw("drawShortText", SHORT_TEXT);
+    }
+
+    @Test
+    public void drawLongText() {
+        benchmarkDraw("drawLongText", LONG_TEXT);
+    }
+
+    @Test
+    public void drawRtlText() {
+        benchmarkDraw("drawRtlText", RTL_TEXT);
+    }
+
+    @Test
+    public void setTextToFirstFrame() {
+        final MarqueeView view = createView(LONG_TEXT);
+
+        sRunner.run("setTextToFirstFrame", new Runnable() {
+            private boolean mToggle;
+
+            @Override
+            public void run() {
+                mToggle = !mToggle;
+                view.setText(mToggle ? RTL_TEXT : LONG_TEXT);
+                layout(view);
+                view.draw(mCanvas);
+            }
+        });
+    }
+
+    @Test
+    public void isScrollable() {
+        final MarqueeView view = createView(LONG_TEXT);
+
+        sRunner.run("isScrollable", new Runnable() {
+            @Override
+            public void run() {
+                assertTrue(view.isScrollable());
+            }
+        });
+    }
+
+    @Test
+    public void inflateViews() {
+        final LayoutInflater inflater = LayoutInflater.from(mContext);
+        final FrameLayout parent = new FrameLayout(mContext);
+
+        sRunner.run("inflateViews", 100, new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < INFLATED_VIEWS; i++) {
+                    inflater.inflate(R.layout.benchmark_marquee, parent, false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Time drawing one frame of the text. The offset is moved each frame as an animator would.
+     *
+     * @param name Name of the benchmark.
+     * @param text Text to draw.
+     */
+    private void benchmarkDraw(String name, String text) {
+        final MarqueeView view = createView(text);
+
+        sRunner.run(name, new Runnable() {
+            @Override
+            public void run() {
+                view.setOffset(view.getOffset() - 1);
+                view.draw(mCanvas);
+            }
+        });
+    }
+
+    /**
+     * Create a view with the text that has been laid out but is not scrolling on its own.
+     *
+     * @param text Text for the marquee.
+     * @return Laid out view.
+     */
+    private MarqueeView createView(String text) {
+        MarqueeView view = new MarqueeView(mContext);
+        view.setAutoStart(false);
+        view.setText(text);
+        layout(view);
+
+        return view;
+    }
+
+    /**
+     * Measure and lay out the view at the benchmark size.
+     *
+     * @param view View to lay out.
+     */
+    private static void layout(View view) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, WIDTH, HEIGHT);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2021 Christopher Zaborsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.unary.marqueeview.benchmark;
+
+import android.animation.ValueAnimator;
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.view.View;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.unary.marqueeview.MarqueeView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the separator is drawn between repeats of the text. The text is only spaces, so any
+ * pixel that is drawn comes from the separator.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+@Config(sdk = 30)
+public class MarqueeViewSeparatorTest {
+
+    private static final int WIDTH = 240;
+    private static final int HEIGHT = 64;
+    private static final int FRAMES = 100;
+
+    private static final String BLANK_TEXT = new String(new char[200]).replace('\0', ' ');
+    private static final String SEPARATOR = " \u2588 ";
+
+    private Context mContext;
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        mBitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mBitmap);
+    }
+
+    @Test
+    public void marqueeView_drawsSeparator() {
+        assertSeparatorDrawn(MarqueeView.CACHE_NONE);
+    }
+
+    @Test
+    public void marqueeView_stripCacheDrawsSeparator() {
+        assertSeparatorDrawn(MarqueeView.CACHE_STRIP);
+    }
+
+    /**
+     * Draw frames across one scrolling period and check that the separator was seen in some of
+     * them.
+     *
+     * @param cacheMode Cache mode of the view.
+     */
+    private void assertSeparatorDrawn(int cacheMode) {
+        MarqueeView view = new MarqueeView(mContext);
+        view.setAutoStart(false);
+        view.setCacheMode(cacheMode);
+        view.setTextColor(ColorStateList.valueOf(Color.BLACK));
+        view.setSeparator(SEPARATOR);
+        view.setText(BLANK_TEXT);
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, WIDTH, HEIGHT);
+
+        assertTrue(view.isScrollable());
+
+        ValueAnimator animator = (ValueAnimator) view.getTextAnimator();
+        long duration = animator.getDuration();
+        int inkedFrames = 0;
+
+        for (int i = 0; i < FRAMES; i++) {
+            mBitmap.eraseColor(Color.TRANSPARENT);
+            animator.setCurrentPlayTime(duration * i / FRAMES);
+            view.draw(mCanvas);
+
+            if (hasInk()) {
+                inkedFrames++;
+            }
+        }
+
+        assertTrue("Separator pixels drawn", inkedFrames > 0);
+    }
+
+    /**
+     * Check if anything was drawn into the bitmap.
+     *
+     * @return True if any pixel is not transparent.
+     */
+    private boolean hasInk() {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                if (Color.alpha(mBitmap.getPixel(x, y)) != 0) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2021 Christopher Zaborsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.unary.marqueeview;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
+/**
+ * Releases the process-wide caches when memory is trimmed. One callback is registered with the
+ * application for the life of the process, so each trim reaches the shared caches once no matter
+ * how many marquees are attached.
+ */
+@MainThread
+final class CacheTrimmer {
+
+    private static ComponentCallbacks2 sComponentCallbacks;
+
+    /**
+     * Static methods only.
+     */
+    private CacheTrimmer() {
+    }
+
+    /**
+     * Register the callback with the application if not done already.
+     *
+     * @param context Context of the view.
+     */
+    static void register(@NonNull Context context) {
+        if (sComponentCallbacks != null) return;
+
+        sComponentCallbacks = new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                TextMeasureCache.onTrimMemory(level);
+                IconAtlas.onTrimMemory(level);
+            }
+
+            @Override
+            public void onConfigurationChanged(@NonNull Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                TextMeasureCache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+                IconAtlas.evictAll();
+            }
+        };
+
+        context.getApplicationContext().registerComponentCallbacks(sComponentCallbacks);
+    }
+}
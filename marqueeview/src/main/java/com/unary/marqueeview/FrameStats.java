@@ -0,0 +1,209 @@
+/*
+ * Copyright 2021 Christopher Zaborsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.unary.marqueeview;
+
+import java.util.Arrays;
+
+/**
+ * Frame statistics of a marquee collected over a window of time. The same instance is reused for
+ * every window, so the values are only valid while the listener is being called.
+ *
+ * @see MarqueeView#setFrameStatsListener(MarqueeView.OnFrameStatsListener, int)
+ */
+public final class FrameStats {
+
+    private static final int PERCENTILE = 95;
+
+    private long mWindowStart;
+    private long mWindowDuration;
+    private int mFramesDrawn;
+    private int mScrollFrames;
+    private int mTicksSkipped;
+    private int mCacheRebuilds;
+    private int mLayoutRequests;
+    private long[] mDrawTimes;
+    private long mTotalDrawTime;
+    private long mMaxDrawTime;
+    private long mPercentileDrawTime;
+
+    /**
+     * Create the statistics for a view. Room for a few seconds of draw times is allocated up front.
+     */
+    FrameStats() {
+        mDrawTimes = new long[256];
+    }
+
+    /**
+     * Start a new window at the given time. All of the counters are cleared.
+     *
+     * @param time Start of the window in milliseconds.
+     */
+    void reset(long time) {
+        mWindowStart = time;
+        mWindowDuration = 0;
+        mFramesDrawn = 0;
+        mScrollFrames = 0;
+        mTicksSkipped = 0;
+        mCacheRebuilds = 0;
+        mLayoutRequests = 0;
+        mTotalDrawTime = 0;
+        mMaxDrawTime = 0;
+        mPercentileDrawTime = 0;
+    }
+
+    /**
+     * Count a drawn frame.
+     *
+     * @param drawTime  Time spent in onDraw() in nanoseconds.
+     * @param scrolling True if the text was scrolling.
+     */
+    void addFrame(long drawTime, boolean scrolling) {
+        if (mFramesDrawn == mDrawTimes.length) {
+            mDrawTimes = Arrays.copyOf(mDrawTimes, mFramesDrawn * 2);
+        }
+
+        mDrawTimes[mFramesDrawn++] = drawTime;
+        mTotalDrawTime += drawTime;
+        mMaxDrawTime = Math.max(mMaxDrawTime, drawTime);
+
+        if (scrolling) {
+            mScrollFrames++;
+        }
+    }
+
+    /**
+     * Count a scroll update that did not redraw the view.
+     */
+    void addSkippedTick() {
+        mTicksSkipped++;
+    }
+
+    /**
+     * Count the text being measured again or the strip cache being rendered again.
+     */
+    void addCacheRebuild() {
+        mCacheRebuilds++;
+    }
+
+    /**
+     * Count a layout requested by the view.
+     */
+    void addLayoutRequest() {
+        mLayoutRequests++;
+    }
+
+    /**
+     * Check if the window has ended and complete the values that are derived from the counters.
+     *
+     * @param time   Current time in milliseconds.
+     * @param window Length of the window in milliseconds.
+     * @return True if the window has ended.
+     */
+    boolean finish(long time, int window) {
+        if (time - mWindowStart < window) return false;
+
+        mWindowDuration = time - mWindowStart;
+
+        if (mFramesDrawn > 0) {
+            Arrays.sort(mDrawTimes, 0, mFramesDrawn);
+            mPercentileDrawTime = mDrawTimes[(mFramesDrawn * PERCENTILE - 1) / 100];
+        }
+
+        return true;
+    }
+
+    /**
+     * Get the length of the window the statistics were collected over.
+     *
+     * @return Duration in milliseconds.
+     */
+    public long getWindowDuration() {
+        return mWindowDuration;
+    }
+
+    /**
+     * Get the number of frames drawn in the window.
+     *
+     * @return Count of frames.
+     */
+    public int getFramesDrawn() {
+        return mFramesDrawn;
+    }
+
+    /**
+     * Get the number of scroll updates that did not redraw the view. These are skipped by pixel
+     * snapping or the frame rate limit.
+     *
+     * @return Count of ticks.
+     */
+    public int getTicksSkipped() {
+        return mTicksSkipped;
+    }
+
+    /**
+     * Get the average time spent drawing a frame.
+     *
+     * @return Duration in nanoseconds.
+     */
+    public long getAverageDrawTime() {
+        return mFramesDrawn > 0 ? mTotalDrawTime / mFramesDrawn : 0;
+    }
+
+    /**
+     * Get the 95th percentile of the time spent drawing a frame.
+     *
+     * @return Duration in nanoseconds.
+     */
+    public long getP95DrawTime() {
+        return mPercentileDrawTime;
+    }
+
+    /**
+     * Get the longest time spent drawing a frame.
+     *
+     * @return Duration in nanoseconds.
+     */
+    public long getMaxDrawTime() {
+        return mMaxDrawTime;
+    }
+
+    /**
+     * Get the number of times the text was measured again or the strip cache was rendered again.
+     *
+     * @return Count of rebuilds.
+     */
+    public int getCacheRebuilds() {
+        return mCacheRebuilds;
+    }
+
+    /**
+     * Get the number of layouts requested by the view, such as by setting the text or its size.
+     *
+     * @return Count of requests.
+     */
+    public int getLayoutRequests() {
+        return mLayoutRequests;
+    }
+
+    /**
+     * Get the rate at which frames of scrolling text were drawn.
+     *
+     * @return Frames per second.
+     */
+    public float getScrollFrameRate() {
+        return mWindowDuration > 0 ? mScrollFrames * 1000f / mWindowDuration : 0;
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2021 Christopher Zaborsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.unary.marqueeview;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+
+/**
+ * A process-wide bitmap that inline icons are rasterized into once for each size. Icons are packed
+ * into shelves one row high, and the bitmap grows taller as shelves are added. Drawables loaded
+ * from the same resource share one entry. Once the bitmap is full, icons that do not fit are drawn
+ * from their drawables instead, so the atlas is never rebuilt while drawing. It is only cleared when
+ * memory is trimmed.
+ *
+ * @see MarqueeView#setIcon(char, Drawable)
+ */
+final class IconAtlas {
+
+    private static final int ATLAS_WIDTH = 1024; // px
+    private static final int MIN_HEIGHT = 64; // px
+    private static final int MAX_HEIGHT = 1024; // px
+    private static final int PADDING = 1; // px
+
+    private static final HashMap<Key, Rect> sRegions = new HashMap<>();
+    private static final Key sLookupKey = new Key();
+
+    private static Bitmap sBitmap;
+    private static Canvas sCanvas;
+    private static int sShelfX;
+    private static int sShelfY;
+    private static int sShelfHeight;
+    private static int sGeneration;
+
+    /**
+     * Static methods only.
+     */
+    private IconAtlas() {
+    }
+
+    /**
+     * Get the height icons are drawn at for a text size. It is limited to what fits in the atlas.
+     *
+     * @param textSize Text size in pixels.
+     * @return Icon height in pixels.
+     */
+    static int getIconHeight(float textSize) {
+        return Math.max(1, Math.min(Math.round(textSize), MAX_HEIGHT - PADDING));
+    }
+
+    /**
+     * Get the width of an icon drawn at the given height. The aspect ratio of the drawable is kept
+     * and one without an intrinsic size is square.
+     *
+     * @param drawable Drawable of the icon.
+     * @param height   Icon height in pixels.
+     * @return Icon width in pixels.
+     */
+    static int getIconWidth(@NonNull Drawable drawable, int height) {
+        int intrinsicWidth = drawable.getIntrinsicWidth();
+        int intrinsicHeight = drawable.getIntrinsicHeight();
+
+        if (intrinsicWidth <= 0 || intrinsicHeight <= 0) {
+            return height;
+        }
+
+        return Math.max(1, Math.min(Math.round((float) intrinsicWidth * height / intrinsicHeight),
+                ATLAS_WIDTH - PADDING));
+    }
+
+    /**
+     * Get the region of the atlas holding an icon. It is rasterized first if it is not there and
+     * still fits.
+     *
+     * @param drawable Drawable of the icon.
+     * @param height   Icon height from getIconHeight().
+     * @return Region of the atlas bitmap, or null if the atlas is full.
+     */
+    @Nullable
+    static synchronized Rect getRegion(@NonNull Drawable drawable, int height) {
+        sLookupKey.set(drawable, height);
+        Rect region = sRegions.get(sLookupKey);
+
+        if (region == null) {
+            region = rasterize(drawable, getIconWidth(drawable, height), height);
+
+            if (region != null) {
+                sRegions.put(new Key(drawable, height), region);
+            }
+        }
+
+        return region;
+    }
+
+    /**
+     * Get the atlas bitmap. Regions are only valid for the generation they were taken in.
+     *
+     * @return Atlas bitmap. This may be null if nothing has been rasterized.
+     */
+    static synchronized Bitmap getBitmap() {
+        return sBitmap;
+    }
+
+    /**
+     * Get the number of times the atlas has been cleared. Regions taken before it changed must be
+     * looked up again.
+     *
+     * @return Atlas generation.
+     */
+    static synchronized int getGeneration() {
+        return sGeneration;
+    }
+
+    /**
+     * Release the atlas once the process is in the background.
+     *
+     * @param level Trim level from ComponentCallbacks2.
+     */
+    static void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            evictAll();
+        }
+    }
+
+    /**
+     * Drop the atlas and every icon in it. The bitmap is not recycled since a frame may still be
+     * drawing it.
+     */
+    static synchronized void evictAll() {
+        sRegions.clear();
+        sBitmap = null;
+        sCanvas = null;
+        sShelfX = 0;
+        sShelfY = 0;
+        sShelfHeight = 0;
+        sGeneration++;
+    }
+
+    /**
+     * Draw an icon into free space in the atlas. A new shelf is started when the current one is
+     * full or too short, and the bitmap is doubled in height when needed. Nothing is changed if
+     * there is no room left.
+     *
+     * @param drawable Drawable of the icon.
+     * @param width    Icon width in pixels.
+     * @param height   Icon height in pixels.
+     * @return Region the icon was drawn in, or null if it does not fit.
+     */
+    @Nullable
+    private static Rect rasterize(Drawable drawable, int width, int height) {
+        int shelfX = sShelfX;
+        int shelfY = sShelfY;
+        int shelfHeight = sShelfHeight;
+
+        if (shelfX + width + PADDING > ATLAS_WIDTH || height > shelfHeight) {
+            // Next shelf below the current one
+            if (shelfX > 0) {
+                shelfY += shelfHeight + PADDING;
+                shelfX = 0;
+            }
+
+            shelfHeight = height;
+        }
+
+        // Smaller icons may still fit on the current shelf
+        if (shelfY + height > MAX_HEIGHT) return null;
+
+        sShelfX = shelfX;
+        sShelfY = shelfY;
+        sShelfHeight = shelfHeight;
+
+        ensureBitmap(sShelfY + height);
+
+        Rect region = new Rect(sShelfX, sShelfY, sShelfX + width, sShelfY + height);
+        sShelfX += width + PADDING;
+
+        // Drawable bounds are only used here
+        Rect bounds = drawable.copyBounds();
+        drawable.setBounds(region);
+        drawable.draw(sCanvas);
+        drawable.setBounds(bounds);
+
+        return region;
+    }
+
+    /**
+     * Make sure the bitmap is at least the given height. A taller bitmap keeps what was already
+     * drawn in the same place.
+     *
+     * @param height Height needed in pixels.
+     */
+    private static void ensureBitmap(int height) {
+        int bitmapHeight = sBitmap != null ? sBitmap.getHeight() : 0;
+        if (height <= bitmapHeight) return;
+
+        int newHeight = Math.max(bitmapHeight, MIN_HEIGHT);
+
+        while (newHeight < height) {
+            newHeight *= 2;
+        }
+
+        Bitmap bitmap = Bitmap.createBitmap(ATLAS_WIDTH, Math.min(newHeight, MAX_HEIGHT), Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+
+        if (sBitmap != null) {
+            canvas.drawBitmap(sBitmap, 0, 0, null);
+        }
+
+        sBitmap = bitmap;
+        sCanvas = canvas;
+    }
+
+    /**
+     * The drawable and size of an icon. Drawables are compared by their constant state so that
+     * ones loaded from the same resource match.
+     */
+    private static final class Key {
+
+        private Object mDrawable;
+        private int mHeight;
+
+        /**
+         * Create an empty key for lookups.
+         */
+        Key() {
+        }
+
+        /**
+         * Create a key for the icon.
+         *
+         * @param drawable Drawable of the icon.
+         * @param height   Icon height in pixels.
+         */
+        Key(Drawable drawable, int height) {
+            set(drawable, height);
+        }
+
+        /**
+         * Point the key at another icon.
+         *
+         * @param drawable Drawable of the icon.
+         * @param height   Icon height in pixels.
+         */
+        void set(Drawable drawable, int height) {
+            Drawable.ConstantState state = drawable.getConstantState();
+
+            mDrawable = state != null ? state : drawable;
+            mHeight = height;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key key = (Key) o;
+
+            return mHeight == key.mHeight && mDrawable == key.mDrawable;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(mDrawable) + mHeight;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2021 Christopher Zaborsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.unary.marqueeview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.text.style.ReplacementSpan;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * An icon drawn in place of a placeholder character. It is as tall as the text size and centered
+ * on the text. The icon is drawn from the shared atlas, so the drawable itself is only drawn once
+ * for each size. If the atlas is full, the drawable is drawn directly instead.
+ */
+final class IconSpan extends ReplacementSpan {
+
+    private final Drawable mDrawable;
+    private final Paint mIconPaint;
+    private final RectF mIconRect;
+    private final Rect mBounds;
+    private Rect mRegion;
+    private int mHeight;
+    private int mGeneration;
+    private boolean mLookedUp;
+
+    /**
+     * Create a span for the icon.
+     *
+     * @param drawable Drawable of the icon.
+     */
+    IconSpan(@NonNull Drawable drawable) {
+        mDrawable = drawable;
+        mIconPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        mIconRect = new RectF();
+        mBounds = new Rect();
+    }
+
+    @Override
+    public int getSize(@NonNull Paint paint, CharSequence text, int start, int end,
+                       @Nullable Paint.FontMetricsInt fm) {
+        if (fm != null) {
+            paint.getFontMetricsInt(fm);
+        }
+
+        return IconAtlas.getIconWidth(mDrawable, IconAtlas.getIconHeight(paint.getTextSize()));
+    }
+
+    @Override
+    public void draw(@NonNull Canvas canvas, CharSequence text, int start, int end, float x, int top, int y,
+                     int bottom, @NonNull Paint paint) {
+        int height = IconAtlas.getIconHeight(paint.getTextSize());
+        int generation = IconAtlas.getGeneration();
+
+        // Look up again after a size change or eviction
+        if (!mLookedUp || height != mHeight || generation != mGeneration) {
+            mRegion = IconAtlas.getRegion(mDrawable, height);
+            mHeight = height;
+            mGeneration = IconAtlas.getGeneration();
+            mLookedUp = true;
+        }
+
+        float iconTop = y + (paint.ascent() + paint.descent() - height) / 2;
+        Bitmap bitmap = IconAtlas.getBitmap();
+
+        if (mRegion == null || bitmap == null) {
+            mIconRect.set(x, iconTop, x + IconAtlas.getIconWidth(mDrawable, height), iconTop + height);
+            drawDrawable(canvas, paint.getAlpha());
+            return;
+        }
+
+        mIconRect.set(x, iconTop, x + mRegion.width(), iconTop + height);
+
+        // Icons dim with the text
+        mIconPaint.setAlpha(paint.getAlpha());
+        canvas.drawBitmap(bitmap, mRegion, mIconRect, mIconPaint);
+    }
+
+    /**
+     * Draw the drawable itself into the icon rect. The drawable may be shared, so its alpha is left
+     * alone and a layer dims it instead.
+     *
+     * @param canvas Canvas to draw on.
+     * @param alpha  Alpha of the text.
+     */
+    private void drawDrawable(Canvas canvas, int alpha) {
+        int saveCount;
+
+        if (alpha == 255) {
+            saveCount = canvas.save();
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            saveCount = canvas.saveLayerAlpha(mIconRect, alpha);
+        } else {
+            saveCount = canvas.saveLayerAlpha(mIconRect, alpha, Canvas.ALL_SAVE_FLAG);
+        }
+
+        // Drawable bounds are only used here
+        mDrawable.copyBounds(mBounds);
+        canvas.translate(mIconRect.left, mIconRect.top);
+        mDrawable.setBounds(0, 0, Math.round(mIconRect.width()), Math.round(mIconRect.height()));
+        mDrawable.draw(canvas);
+        mDrawable.setBounds(mBounds);
+
+        canvas.restoreToCount(saveCount);
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2021 Christopher Zaborsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.unary.marqueeview;
+
+import android.graphics.Paint;
+
+import androidx.annotation.NonNull;
+
+/**
+ * The lines of a vertical marquee. Only the two visible lines and the one after them are measured.
+ * Their metrics are kept in a ring and reused as the lines move on, so a text of any number of
+ * lines costs the same to draw. The text is never split up front. Measuring the line that moves in
+ * allocates, but frames between line changes do not.
+ */
+final class LineSlots {
+
+    private static final int SLOT_COUNT = 3; // Two visible and one prefetched
+    private static final String NO_SEPARATOR = "";
+
+    private final TextMetrics[] mMetrics;
+    private final String[] mLines;
+    private final int[] mStarts;
+    private String mText;
+    private int mLineCount;
+    private int mLine;
+    private int mFirstSlot;
+
+    /**
+     * Create the slots. Nothing is measured until the text is set.
+     */
+    LineSlots() {
+        mMetrics = new TextMetrics[SLOT_COUNT];
+        mLines = new String[SLOT_COUNT];
+        mStarts = new int[SLOT_COUNT];
+
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            mMetrics[i] = new TextMetrics();
+        }
+    }
+
+    /**
+     * Set the text and measure its first lines. Lines are separated by line feeds.
+     *
+     * @param paint Paint for the text.
+     * @param text  Text of all the lines.
+     */
+    void setText(@NonNull Paint paint, @NonNull String text) {
+        mText = text;
+        mLineCount = 1;
+
+        for (int i = text.indexOf('\n'); i >= 0; i = text.indexOf('\n', i + 1)) {
+            mLineCount++;
+        }
+
+        measureFrom(paint, 0, 0);
+    }
+
+    /**
+     * Forget the text so that it is measured again when next set.
+     */
+    void clear() {
+        mText = null;
+    }
+
+    /**
+     * Check if the slots were measured for the text and paint.
+     *
+     * @param paint Paint for the text.
+     * @param text  Text of all the lines.
+     * @return True if still valid.
+     */
+    boolean isValid(@NonNull Paint paint, @NonNull String text) {
+        return text.equals(mText) && mMetrics[mFirstSlot].isValid(paint, mLines[mFirstSlot], NO_SEPARATOR);
+    }
+
+    /**
+     * Move the first visible line. Moving on by one line only measures the line that becomes the
+     * prefetched one. The lines repeat after the last one.
+     *
+     * @param paint Paint for the text.
+     * @param line  Line to show first. This may be past the line count or negative.
+     */
+    void moveTo(@NonNull Paint paint, int line) {
+        if (line == mLine) return;
+
+        if (line != mLine + 1) {
+            int index = (line % mLineCount + mLineCount) % mLineCount;
+            int start = 0;
+
+            for (int i = 0; i < index; i++) {
+                start = mText.indexOf('\n', start) + 1;
+            }
+
+            measureFrom(paint, line, start);
+            return;
+        }
+
+        // First slot becomes the last one
+        int recycled = mFirstSlot;
+        int start = getNextStart(getSlot(SLOT_COUNT - 1));
+
+        mFirstSlot = getSlot(1);
+        mLine = line;
+
+        measureSlot(paint, recycled, start);
+    }
+
+    /**
+     * Get the number of lines in the text.
+     *
+     * @return Count of lines.
+     */
+    int getLineCount() {
+        return mLineCount;
+    }
+
+    /**
+     * Get the metrics of a visible line.
+     *
+     * @param index Zero for the first visible line.
+     * @return Metrics for the line.
+     */
+    TextMetrics getMetrics(int index) {
+        return mMetrics[getSlot(index)];
+    }
+
+    /**
+     * Get the height of one line.
+     *
+     * @return Font height in pixels.
+     */
+    float getFontHeight() {
+        return mMetrics[mFirstSlot].getFontHeight();
+    }
+
+    /**
+     * Get the width of the widest measured line.
+     *
+     * @return Text width in pixels.
+     */
+    float getTextWidth() {
+        float width = 0;
+
+        for (TextMetrics metrics : mMetrics) {
+            width = Math.max(width, metrics.getTextWidth());
+        }
+
+        return width;
+    }
+
+    /**
+     * Measure every slot starting with the given line.
+     *
+     * @param paint Paint for the text.
+     * @param line  Line for the first slot.
+     * @param start Character index of the line.
+     */
+    private void measureFrom(Paint paint, int line, int start) {
+        mLine = line;
+        mFirstSlot = 0;
+
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            measureSlot(paint, i, start);
+            start = getNextStart(i);
+        }
+    }
+
+    /**
+     * Measure the line at the character index into a slot.
+     *
+     * @param paint Paint for the text.
+     * @param slot  Slot to reuse.
+     * @param start Character index of the line.
+     */
+    private void measureSlot(Paint paint, int slot, int start) {
+        int end = mText.indexOf('\n', start);
+
+        mLines[slot] = mText.substring(start, end >= 0 ? end : mText.length());
+        mStarts[slot] = start;
+        mMetrics[slot].measure(paint, mLines[slot], NO_SEPARATOR);
+    }
+
+    /**
+     * Find where the line after the one in a slot starts. The first line follows the last.
+     *
+     * @param slot Slot of the line.
+     * @return Character index of the next line.
+     */
+    private int getNextStart(int slot) {
+        int end = mStarts[slot] + mLines[slot].length();
+        return end < mText.length() ? end + 1 : 0;
+    }
+
+    /**
+     * Get the slot of a visible line.
+     *
+     * @param index Zero for the first visible line.
+     * @return Slot in the ring.
+     */
+    private int getSlot(int index) {
+        return (mFirstSlot + index) % SLOT_COUNT;
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2021 Christopher Zaborsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.unary.marqueeview;
+
+import androidx.annotation.NonNull;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+
+/**
+ * Marquees that scroll in lockstep from one shared clock. Each member's position is found from the
+ * time since the group was created and its own scroll speed and phase, instead of adding up the
+ * time of its own frames. Members that were paused, laid out again or given new text jump back into
+ * place on their next frame.
+ *
+ * <p>Members are advanced by the shared ticker, so every member on a thread is moved from the same
+ * frame time. Only horizontal marquees with the default animator can be grouped, and a member
+ * scrolls indefinitely regardless of its repeat count. The group must be used on the thread of its
+ * views.</p>
+ *
+ * <p>Members are only weakly held, so a group that outlives a screen does not keep its views. The
+ * phase of each member is kept on the view itself.</p>
+ */
+public final class MarqueeGroup {
+
+    private final ArrayList<WeakReference<MarqueeView>> mMembers;
+    private long mStartTime;
+    private long mPausedTime;
+    private long mPauseStart;
+
+    /**
+     * Create an empty group. Its clock starts now.
+     */
+    public MarqueeGroup() {
+        mMembers = new ArrayList<>();
+        mStartTime = System.nanoTime();
+    }
+
+    /**
+     * Add a view to the group with no phase offset. A running scroll moves to the shared ticker.
+     *
+     * @param view View to add.
+     */
+    public void add(@NonNull MarqueeView view) {
+        add(view, 0);
+    }
+
+    /**
+     * Add a view to the group. A view in another group is moved to this one.
+     *
+     * @param view  View to add.
+     * @param phase Distance the view is ahead of the group in pixels.
+     */
+    public void add(@NonNull MarqueeView view, float phase) {
+        MarqueeGroup group = view.getGroup();
+
+        if (group == this) {
+            view.setGroupPhase(phase);
+            return;
+        }
+
+        if (group != null) {
+            group.remove(view);
+        }
+
+        removeCleared();
+        mMembers.add(new WeakReference<>(view));
+        view.setGroup(this, phase);
+    }
+
+    /**
+     * Remove a view from the group. It continues scrolling on its own from where it is.
+     *
+     * @param view View to remove.
+     */
+    public void remove(@NonNull MarqueeView view) {
+        if (view.getGroup() != this) return;
+
+        for (int i = mMembers.size() - 1; i >= 0; i--) {
+            MarqueeView member = mMembers.get(i).get();
+
+            if (member == view || member == null) {
+                mMembers.remove(i);
+            }
+        }
+
+        view.setGroup(null, 0);
+    }
+
+    /**
+     * Get the number of views in the group.
+     *
+     * @return Count of members.
+     */
+    public int getMemberCount() {
+        removeCleared();
+        return mMembers.size();
+    }
+
+    /**
+     * Get the phase offset of a member.
+     *
+     * @param view Member of the group.
+     * @return Distance ahead of the group in pixels, or zero if not a member.
+     */
+    public float getPhase(@NonNull MarqueeView view) {
+        return view.getGroup() == this ? view.getGroupPhase() : 0;
+    }
+
+    /**
+     * Set the phase offset of a member. It takes effect on the next frame.
+     *
+     * @param view  Member of the group.
+     * @param phase Distance ahead of the group in pixels.
+     */
+    public void setPhase(@NonNull MarqueeView view, float phase) {
+        if (view.getGroup() == this) {
+            view.setGroupPhase(phase);
+        }
+    }
+
+    /**
+     * Stop the shared clock. Every member holds its place until resumed.
+     */
+    public void pause() {
+        if (mPauseStart == 0) {
+            mPauseStart = System.nanoTime();
+        }
+    }
+
+    /**
+     * Continue the shared clock from where it was paused.
+     */
+    public void resume() {
+        if (mPauseStart != 0) {
+            mPausedTime += System.nanoTime() - mPauseStart;
+            mPauseStart = 0;
+        }
+    }
+
+    /**
+     * Check if the shared clock is paused.
+     *
+     * @return True if paused.
+     */
+    public boolean isPaused() {
+        return mPauseStart != 0;
+    }
+
+    /**
+     * Move every member back to the start of its text.
+     */
+    public void restart() {
+        mStartTime = System.nanoTime();
+        mPausedTime = 0;
+
+        if (mPauseStart != 0) {
+            mPauseStart = mStartTime;
+        }
+    }
+
+    /**
+     * Get the scroll position of a member at a frame time. It is the distance covered at the scroll
+     * speed since the group started, plus its phase, within one period.
+     *
+     * @param view           Member of the group.
+     * @param frameTimeNanos Time of the frame.
+     * @param width          Width of one scrolling period.
+     * @return Position from zero down to minus the width.
+     */
+    float getScroll(@NonNull MarqueeView view, long frameTimeNanos, float width) {
+        if (width <= 0) return 0;
+
+        long time = mPauseStart != 0 ? mPauseStart : Math.max(frameTimeNanos, mStartTime);
+        double distance = (time - mStartTime - mPausedTime) / MarqueeView.NANOS_PER_MILLI
+                * view.getScrollSpeed() / MarqueeView.SCROLL_MULTIPLIER + view.getGroupPhase();
+
+        return (float) -((distance % width + width) % width);
+    }
+
+    /**
+     * Drop members that have been garbage collected.
+     */
+    private void removeCleared() {
+        for (int i = mMembers.size() - 1; i >= 0; i--) {
+            if (mMembers.get(i).get() == null) {
+                mMembers.remove(i);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2021 Christopher Zaborsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.unary.marqueeview;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+
+/**
+ * A list of messages that a marquee rotates through. Each message scrolls for its repeat count and
+ * is then followed by the next one inside the same scroll, looping back to the first. The next
+ * message is measured ahead of time so that no layout is needed between messages.
+ *
+ * <p>Messages can be added while the playlist is playing. They are picked up when the marquee moves
+ * on to them. Extend it to provide the messages from elsewhere.</p>
+ *
+ * @see MarqueeView#setPlaylist(MarqueePlaylist, java.util.concurrent.Executor)
+ */
+public class MarqueePlaylist {
+
+    private final ArrayList<CharSequence> mMessages;
+    private final ArrayList<Integer> mRepeatCounts;
+
+    /**
+     * Create an empty playlist.
+     */
+    public MarqueePlaylist() {
+        mMessages = new ArrayList<>();
+        mRepeatCounts = new ArrayList<>();
+    }
+
+    /**
+     * Add a message that scrolls once before the next one.
+     *
+     * @param message Message to add.
+     */
+    public void add(@NonNull CharSequence message) {
+        add(message, 1);
+    }
+
+    /**
+     * Add a message that scrolls the given number of times before the next one.
+     *
+     * @param message     Message to add.
+     * @param repeatCount Number of times to scroll. This is at least one.
+     */
+    public void add(@NonNull CharSequence message, int repeatCount) {
+        mMessages.add(message);
+        mRepeatCounts.add(repeatCount > 0 ? repeatCount : 1);
+    }
+
+    /**
+     * Remove all of the messages.
+     */
+    public void clear() {
+        mMessages.clear();
+        mRepeatCounts.clear();
+    }
+
+    /**
+     * Get the number of messages in the playlist.
+     *
+     * @return Count of messages.
+     */
+    public int getCount() {
+        return mMessages.size();
+    }
+
+    /**
+     * Get the message at the given position.
+     *
+     * @param index Position of the message.
+     * @return Message to scroll.
+     */
+    @NonNull
+    public CharSequence getMessage(int index) {
+        return mMessages.get(index);
+    }
+
+    /**
+     * Get the number of times the message at the given position scrolls before the next one.
+     *
+     * @param index Position of the message.
+     * @return Repeat count of the message.
+     */
+    public int getRepeatCount(int index) {
+        return mRepeatCounts.get(index);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2021 Christopher Zaborsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.unary.marqueeview;
+
+import android.util.LruCache;
+
+/**
+ * Scroll positions of recycled marquees, kept by the key of their item. A store belongs to one
+ * owner, such as an adapter, so keys of different lists never collide and each list has its own
+ * limit. The least recently used positions are dropped once the limit is reached.
+ *
+ * <p>The store must be used on the thread of its views.</p>
+ *
+ * @see MarqueeView#bind(CharSequence, long, MarqueePositions)
+ */
+public final class MarqueePositions {
+
+    private static final int DEFAULT_MAX_SIZE = 100;
+
+    private final LruCache<Long, Float> mPositions;
+
+    /**
+     * Create a store that keeps up to 100 positions.
+     */
+    public MarqueePositions() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Create a store that keeps up to the given number of positions.
+     *
+     * @param maxSize Maximum number of positions. This is at least one.
+     */
+    public MarqueePositions(int maxSize) {
+        mPositions = new LruCache<>(maxSize > 0 ? maxSize : 1);
+    }
+
+    /**
+     * Remove all of the positions, such as when the list is replaced.
+     */
+    public void clear() {
+        mPositions.evictAll();
+    }
+
+    /**
+     * Get the number of positions kept.
+     *
+     * @return Count of positions.
+     */
+    public int size() {
+        return mPositions.size();
+    }
+
+    /**
+     * Get the scroll position kept for the key.
+     *
+     * @param key Key of the item.
+     * @return Scroll position, or zero if none is kept.
+     */
+    float get(long key) {
+        Float scroll = mPositions.get(key);
+        return scroll != null ? scroll : 0;
+    }
+
+    /**
+     * Keep the scroll position for the key.
+     *
+     * @param key    Key of the item.
+     * @param scroll Scroll position.
+     */
+    void put(long key, float scroll) {
+        mPositions.put(key, scroll);
+    }
+
+    /**
+     * Forget the scroll position for the key.
+     *
+     * @param key Key of the item.
+     */
+    void remove(long key) {
+        mPositions.remove(key);
+    }
+}
@@ -0,0 +1,677 @@
+/*
+ * Copyright 2021 Christopher Zaborsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.unary.marqueeview;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A marquee text widget that draws on its own render thread, so the scroll keeps going while the UI
+ * thread is busy. It shares the attributes, measurement and gravity of MarqueeView and scrolls at
+ * the same speed. Note that this is not extended from TextView.
+ *
+ * <p>The text is measured on the UI thread and handed to the render thread as an immutable state
+ * through an atomic reference. The render thread draws at vsync pace while scrolling and stops
+ * drawing once the text is still. Only the text, color, size, speed, gravity, separator and auto
+ * start attributes are used. The scroll always repeats.</p>
+ *
+ * <p>The surface is translucent and ordered as a media overlay. It sits behind the window with a
+ * hole cut where the view is, but above any video surface. Sibling views drawn over it stay on top
+ * as with any other view. The window background does not show through around the text.</p>
+ */
+public class MarqueeSurfaceView extends SurfaceView implements SurfaceHolder.Callback {
+
+    private String mText;
+    private ColorStateList mTextColor;
+    private float mScrollSpeed;
+    private boolean mAutoStart;
+    private int mGravity;
+    private String mSeparator;
+    private boolean mPaused;
+    private Paint mTextPaint;
+    private TextMetrics mTextMetrics;
+    private Rect mDrawingRect;
+    private AtomicReference<RenderState> mRenderState;
+    private RenderThread mRenderThread;
+
+    /**
+     * Simple constructor to use when creating the view from code.
+     *
+     * @param context Context given for the view. This determines the resources and theme.
+     */
+    public MarqueeSurfaceView(Context context) {
+        super(context);
+        init(context, null, 0, 0);
+    }
+
+    /**
+     * Constructor that is called when inflating the view from XML.
+     *
+     * @param context Context given for the view. This determines the resources and theme.
+     * @param attrs   The attributes for the inflated XML tag.
+     */
+    public MarqueeSurfaceView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        init(context, attrs, 0, 0);
+    }
+
+    /**
+     * Constructor called when inflating from XML and applying a style.
+     *
+     * @param context      Context given for the view. This determines the resources and theme.
+     * @param attrs        The attributes for the inflated XML tag.
+     * @param defStyleAttr Default style attributes to apply to this view.
+     */
+    public MarqueeSurfaceView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init(context, attrs, defStyleAttr, 0);
+    }
+
+    /**
+     * Constructor that is used when given a default shared style.
+     *
+     * @param context      Context given for the view. This determines the resources and theme.
+     * @param attrs        The attributes for the inflated XML tag.
+     * @param defStyleAttr Default style attributes to apply to this view.
+     * @param defStyleRes  Default style resource to apply to this view.
+     */
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    public MarqueeSurfaceView(Context context, @Nullable AttributeSet attrs, int defStyleAttr, int defStyleRes) {
+        super(context, attrs, defStyleAttr, defStyleRes);
+        init(context, attrs, defStyleAttr, defStyleRes);
+    }
+
+    /**
+     * Initialize the view with the MarqueeView attributes and prepare the surface.
+     *
+     * @param context      Context given for the view. This determines the resources and theme.
+     * @param attrs        The attributes for the inflated XML tag.
+     * @param defStyleAttr Default style attributes to apply to this view.
+     * @param defStyleRes  Default style resource to apply to this view.
+     */
+    private void init(Context context, @Nullable AttributeSet attrs, int defStyleAttr, int defStyleRes) {
+        TypedArray typedArray = context.getTheme()
+                .obtainStyledAttributes(attrs, R.styleable.MarqueeView, defStyleAttr, defStyleRes);
+
+        boolean enabled;
+        float textSize;
+        CharSequence text;
+
+        try {
+            mScrollSpeed = typedArray.getFraction(R.styleable.MarqueeView_scrollSpeed, 1, 1,
+                    MarqueeView.SCROLL_SPEED);
+            mAutoStart = typedArray.getBoolean(R.styleable.MarqueeView_android_autoStart, MarqueeView.AUTO_START);
+            enabled = typedArray.getBoolean(R.styleable.MarqueeView_android_enabled, isEnabled());
+            mGravity = typedArray.getInt(R.styleable.MarqueeView_android_gravity, MarqueeView.GRAVITY);
+            text = typedArray.getText(R.styleable.MarqueeView_android_text);
+            mTextColor = typedArray.getColorStateList(R.styleable.MarqueeView_android_textColor);
+            textSize = typedArray.getDimension(R.styleable.MarqueeView_android_textSize,
+                    MarqueeView.dpToPixels(context, MarqueeView.TEXT_SIZE));
+            mSeparator = typedArray.getString(R.styleable.MarqueeView_separator);
+        } finally {
+            typedArray.recycle();
+        }
+
+        // Sanitize the input values
+        mText = text != null ? text.toString() : "";
+        mSeparator = mSeparator != null ? mSeparator : MarqueeView.SEPARATOR;
+        mScrollSpeed = mScrollSpeed > 0 ? mScrollSpeed : 0;
+
+        // Provide some default colors
+        if (mTextColor == null) {
+            mTextColor = MarqueeView.getDefaultTextColor(context);
+        }
+
+        // Initialize the drawing objects
+        mTextPaint = MarqueeView.createTextPaint(textSize);
+
+        mDrawingRect = new Rect();
+        mTextMetrics = new TextMetrics();
+        mRenderState = new AtomicReference<>();
+
+        // Sibling views stay on top, but video surfaces stay below
+        setZOrderMediaOverlay(true);
+        getHolder().setFormat(PixelFormat.TRANSLUCENT);
+        getHolder().addCallback(this);
+
+        // Set a stateful text color
+        setEnabled(enabled);
+        updateTextColor();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MarqueeView.getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec);
+        int height = MarqueeView.getDefaultSize(getSuggestedMinimumHeight(), heightMeasureSpec);
+
+        setMeasuredDimension(width, height);
+    }
+
+    @Override
+    protected int getSuggestedMinimumWidth() {
+        ensureTextMetrics();
+
+        float width = mTextMetrics.getTextWidth() + getPaddingLeft() + getPaddingRight();
+        return Math.max(super.getSuggestedMinimumWidth(), (int) Math.ceil(width));
+    }
+
+    @Override
+    protected int getSuggestedMinimumHeight() {
+        ensureTextMetrics();
+
+        float height = mTextMetrics.getFontHeight() + getPaddingTop() + getPaddingBottom();
+        return Math.max(super.getSuggestedMinimumHeight(), (int) Math.ceil(height));
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        super.onLayout(changed, left, top, right, bottom);
+
+        ensureTextMetrics();
+        MarqueeView.findDrawingRect(this, mGravity, mTextMetrics, mDrawingRect);
+
+        updateRenderState();
+    }
+
+    @Override
+    protected void drawableStateChanged() {
+        super.drawableStateChanged();
+
+        // Called before init() when disabled
+        if (mTextPaint != null) {
+            updateTextColor();
+        }
+    }
+
+    @Override
+    public void surfaceCreated(@NonNull SurfaceHolder holder) {
+        mRenderThread = new RenderThread(holder, mRenderState);
+        mRenderThread.startRendering();
+    }
+
+    @Override
+    public void surfaceChanged(@NonNull SurfaceHolder holder, int format, int width, int height) {
+        mRenderThread.requestRender();
+    }
+
+    @Override
+    public void surfaceDestroyed(@NonNull SurfaceHolder holder) {
+        // Surface cannot be used after returning
+        mRenderThread.stopRendering();
+        mRenderThread = null;
+    }
+
+    /**
+     * Determine if the current text is long enough to be scrollable in the view configuration.
+     *
+     * @return True if text is scrollable.
+     */
+    public boolean isScrollable() {
+        ensureTextMetrics();
+        return mTextMetrics.getTextWidth() > getWidth() - getPaddingLeft() - getPaddingRight();
+    }
+
+    /**
+     * Pause the scroll on the render thread. It stays paused until resume() is called.
+     */
+    protected void pause() {
+        mPaused = true;
+        updateRenderState();
+    }
+
+    /**
+     * Resume the scroll on the render thread from where it was paused.
+     */
+    protected void resume() {
+        mPaused = false;
+        updateRenderState();
+    }
+
+    /**
+     * Check if the scroll has been paused.
+     *
+     * @return True if paused.
+     */
+    public boolean isPaused() {
+        return mPaused;
+    }
+
+    /**
+     * Apply the text color for the current drawable state. Only a color change is handed over.
+     */
+    private void updateTextColor() {
+        int statefulColor = mTextColor.getColorForState(getDrawableState(), mTextColor.getDefaultColor());
+
+        if (mTextPaint.getColor() != statefulColor) {
+            mTextPaint.setColor(statefulColor);
+            updateRenderState();
+        }
+    }
+
+    /**
+     * Measure the text again if it or the paint has changed. New metrics are created every time,
+     * as the render thread may still be drawing with the old ones.
+     *
+     * @return True if measured.
+     */
+    private boolean ensureTextMetrics() {
+        if (mTextMetrics.isValid(mTextPaint, mText, mSeparator)) return false;
+
+        mTextMetrics = new TextMetrics();
+        mTextMetrics.measure(mTextPaint, mText, mSeparator);
+
+        return true;
+    }
+
+    /**
+     * Hand the current text, paint and drawing rect to the render thread. Nothing is handed over
+     * before the first layout.
+     */
+    private void updateRenderState() {
+        if (mRenderState == null || mDrawingRect.isEmpty()) return;
+
+        // Paint changed since layout
+        if (ensureTextMetrics()) {
+            requestLayout();
+        }
+
+        float velocity = mScrollSpeed * 1000 / MarqueeView.SCROLL_MULTIPLIER;
+        boolean scrollable = isScrollable();
+        boolean scrolling = scrollable && mAutoStart && !mPaused && velocity > 0;
+
+        mRenderState.set(new RenderState(mText, mTextMetrics, new Paint(mTextPaint), new Rect(mDrawingRect),
+                scrollable, scrolling, velocity));
+
+        if (mRenderThread != null) {
+            mRenderThread.requestRender();
+        }
+    }
+
+    /**
+     * Get the current text.
+     *
+     * @return Text for the marquee.
+     */
+    @NonNull
+    public String getText() {
+        return mText;
+    }
+
+    /**
+     * Set the text. It is measured here and drawn by the render thread after the next layout.
+     *
+     * @param text Text for the marquee.
+     */
+    public void setText(@NonNull String text) {
+        mText = text != null ? text : "";
+        requestLayout();
+    }
+
+    /**
+     * Get the text color state list.
+     *
+     * @return Text color state list.
+     */
+    @NonNull
+    public ColorStateList getTextColor() {
+        return mTextColor;
+    }
+
+    /**
+     * Set the text color state list. This is handed over without a layout.
+     *
+     * @param textColor Text color state list.
+     */
+    public void setTextColor(@NonNull ColorStateList textColor) {
+        mTextColor = textColor;
+        updateTextColor();
+    }
+
+    /**
+     * Get the text size.
+     *
+     * @return Text size in pixels.
+     */
+    public float getTextSize() {
+        return mTextPaint.getTextSize();
+    }
+
+    /**
+     * Set the text size.
+     *
+     * @param textSize Text size in pixels.
+     */
+    public void setTextSize(float textSize) {
+        mTextPaint.setTextSize(textSize);
+        requestLayout();
+    }
+
+    /**
+     * Get the scroll speed. The interval is a percentage of speed with 1 being normal.
+     *
+     * @return Scroll speed.
+     */
+    public float getScrollSpeed() {
+        return mScrollSpeed;
+    }
+
+    /**
+     * Set the scroll speed. The interval is a percentage of speed with 1 being normal. The scroll
+     * continues from where it is.
+     *
+     * @param scrollSpeed Scroll speed.
+     */
+    public void setScrollSpeed(float scrollSpeed) {
+        mScrollSpeed = scrollSpeed > 0 ? scrollSpeed : 0;
+        updateRenderState();
+    }
+
+    /**
+     * Check if the scroll starts automatically.
+     *
+     * @return True if auto start.
+     */
+    public boolean isAutoStart() {
+        return mAutoStart;
+    }
+
+    /**
+     * Set if the scroll starts automatically.
+     *
+     * @param autoStart True if auto start.
+     */
+    public void setAutoStart(boolean autoStart) {
+        mAutoStart = autoStart;
+        updateRenderState();
+    }
+
+    /**
+     * Get the gravity applied within the view.
+     *
+     * @return Gravity flags.
+     */
+    public int getGravity() {
+        return mGravity;
+    }
+
+    /**
+     * Set the gravity applied within the view.
+     *
+     * @param gravity Gravity flags.
+     */
+    public void setGravity(int gravity) {
+        mGravity = gravity;
+        requestLayout();
+    }
+
+    /**
+     * Get the text drawn between repeats.
+     *
+     * @return Separator text.
+     */
+    @NonNull
+    public String getSeparator() {
+        return mSeparator;
+    }
+
+    /**
+     * Set the text drawn between repeats.
+     *
+     * @param separator Separator text.
+     */
+    public void setSeparator(@NonNull String separator) {
+        mSeparator = separator != null ? separator : MarqueeView.SEPARATOR;
+        requestLayout();
+    }
+
+    /**
+     * Everything the render thread needs for a frame. It is never changed once handed over.
+     */
+    private static final class RenderState {
+
+        private final String mText;
+        private final TextMetrics mTextMetrics;
+        private final Paint mTextPaint;
+        private final Rect mDrawingRect;
+        private final boolean mScrollable;
+        private final boolean mScrolling;
+        private final float mVelocity;
+
+        /**
+         * Create the state for the render thread.
+         *
+         * @param text        Text for the marquee.
+         * @param textMetrics Metrics for the text.
+         * @param textPaint   Paint owned by the state.
+         * @param drawingRect Rect owned by the state.
+         * @param scrollable  True if the text is scrollable.
+         * @param scrolling   True if the text should scroll.
+         * @param velocity    Speed in pixels per second.
+         */
+        RenderState(String text, TextMetrics textMetrics, Paint textPaint, Rect drawingRect,
+                    boolean scrollable, boolean scrolling, float velocity) {
+            mText = text;
+            mTextMetrics = textMetrics;
+            mTextPaint = textPaint;
+            mDrawingRect = drawingRect;
+            mScrollable = scrollable;
+            mScrolling = scrolling;
+            mVelocity = velocity;
+        }
+
+        /**
+         * Draw the text at the scroll position. This follows MarqueeView without the caches.
+         *
+         * @param canvas Canvas to draw on.
+         * @param scroll Scroll position within one period.
+         */
+        void draw(Canvas canvas, float scroll) {
+            float baseline = MarqueeView.getTextHeight(mTextPaint) + mDrawingRect.top
+                    + mTextMetrics.getBaselineShift();
+            boolean ltrText = mTextMetrics.isLtrText();
+
+            canvas.save();
+            canvas.clipRect(mDrawingRect);
+
+            // Text that fits is drawn once
+            if (!mScrollable) {
+                float dx = ltrText ? 0 : mDrawingRect.width() - mTextMetrics.getTextWidth();
+                mTextMetrics.draw(canvas, mTextPaint, dx + mDrawingRect.left, baseline);
+                canvas.restore();
+                return;
+            }
+
+            float width = mTextMetrics.getSegmentWidth();
+            float dx = scroll;
+
+            // Mirror if text is RTL
+            if (!ltrText) {
+                dx = mDrawingRect.width() - dx - width * 2;
+            }
+
+            MarqueeView.drawSegment(canvas, mTextPaint, mText, mTextMetrics, mDrawingRect, ltrText, dx, baseline);
+            MarqueeView.drawSegment(canvas, mTextPaint, mText, mTextMetrics, mDrawingRect, ltrText, dx + width,
+                    baseline);
+
+            canvas.restore();
+        }
+    }
+
+    /**
+     * The thread that owns the surface while it exists. It draws from a Choreographer of its own,
+     * so frames keep coming at vsync pace while the UI thread is busy.
+     */
+    private static final class RenderThread extends HandlerThread implements Choreographer.FrameCallback {
+
+        private final SurfaceHolder mHolder;
+        private final AtomicReference<RenderState> mRenderState;
+        private final Runnable mRenderRunnable;
+        private Handler mHandler;
+        private Choreographer mChoreographer;
+        private RenderState mDrawnState;
+        private float mScroll;
+        private long mFrameTime;
+        private boolean mPosted;
+
+        /**
+         * Create the thread for the surface.
+         *
+         * @param holder      Holder of the surface.
+         * @param renderState State handed over by the view.
+         */
+        RenderThread(SurfaceHolder holder, AtomicReference<RenderState> renderState) {
+            super("MarqueeSurfaceView", Process.THREAD_PRIORITY_DISPLAY);
+
+            mHolder = holder;
+            mRenderState = renderState;
+
+            mRenderRunnable = new Runnable() {
+                @Override
+                public void run() {
+                    postFrame();
+                }
+            };
+        }
+
+        @Override
+        protected void onLooperPrepared() {
+            mChoreographer = Choreographer.getInstance();
+            postFrame();
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mPosted = false;
+
+            RenderState state = mRenderState.get();
+            if (state == null) return;
+
+            // New text starts from the beginning
+            if (mDrawnState == null || state.mTextMetrics != mDrawnState.mTextMetrics) {
+                mScroll = 0;
+            }
+
+            if (state.mScrolling) {
+                float width = state.mTextMetrics.getSegmentWidth();
+
+                if (mFrameTime != 0) {
+                    mScroll -= (frameTimeNanos - mFrameTime) / 1000000000f * state.mVelocity;
+                    mScroll %= width;
+                }
+
+                mFrameTime = frameTimeNanos;
+            } else {
+                mFrameTime = 0;
+            }
+
+            drawFrame(state);
+            mDrawnState = state;
+
+            if (state.mScrolling) {
+                postFrame();
+            }
+        }
+
+        /**
+         * Start the thread. It draws as soon as its looper is ready.
+         */
+        void startRendering() {
+            start();
+            mHandler = new Handler(getLooper());
+        }
+
+        /**
+         * Draw a frame for the latest state. This may be called from any thread.
+         */
+        void requestRender() {
+            mHandler.post(mRenderRunnable);
+        }
+
+        /**
+         * Stop the thread and wait until it no longer uses the surface.
+         */
+        void stopRendering() {
+            quit();
+
+            boolean interrupted = false;
+
+            while (isAlive()) {
+                try {
+                    join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Ask for the next vsync if not already asked for.
+         */
+        private void postFrame() {
+            if (!mPosted) {
+                mChoreographer.postFrameCallback(this);
+                mPosted = true;
+            }
+        }
+
+        /**
+         * Draw the state into the surface. Hardware canvases are used when available.
+         *
+         * @param state State to draw.
+         */
+        private void drawFrame(RenderState state) {
+            Canvas canvas = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                    ? mHolder.lockHardwareCanvas() : mHolder.lockCanvas();
+            if (canvas == null) return;
+
+            try {
+                canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+
+                float width = state.mTextMetrics.getSegmentWidth();
+                float dx = width > 0 ? mScroll % width : 0;
+
+                state.draw(canvas, dx > 0 ? dx - width : dx);
+            } finally {
+                mHolder.unlockCanvasAndPost(canvas);
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2021 Christopher Zaborsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.unary.marqueeview;
+
+import android.view.Choreographer;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+
+/**
+ * A frame callback shared by every marquee on a thread that uses it. The views are advanced from
+ * the frame time instead of each one running its own animator. Views only receive ticks while they
+ * are attached and scrollable.
+ *
+ * <p>Enable it with {@code app:sharedTicker="true"} or {@link MarqueeView#setSharedTicker(boolean)}.
+ * Views that have been given their own animator do not use the ticker.</p>
+ */
+public final class MarqueeTicker implements Choreographer.FrameCallback {
+
+    private static final ThreadLocal<MarqueeTicker> sTicker = new ThreadLocal<>();
+
+    private final Choreographer mChoreographer;
+    private final ArrayList<MarqueeView> mViews;
+    private boolean mPosted;
+
+    /**
+     * Create a ticker for the current thread. The thread must have a looper.
+     */
+    private MarqueeTicker() {
+        mChoreographer = Choreographer.getInstance();
+        mViews = new ArrayList<>();
+    }
+
+    /**
+     * Get the ticker for the current thread. One is created when first used. The thread must have
+     * a looper.
+     *
+     * @return Ticker for the thread.
+     */
+    @NonNull
+    public static MarqueeTicker getInstance() {
+        MarqueeTicker ticker = sTicker.get();
+
+        if (ticker == null) {
+            ticker = new MarqueeTicker();
+            sTicker.set(ticker);
+        }
+
+        return ticker;
+    }
+
+    /**
+     * Get the number of views currently receiving ticks.
+     *
+     * @return Count of views.
+     */
+    public int getViewCount() {
+        return mViews.size();
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mPosted = false;
+
+        // Views may leave while ticking
+        for (int i = mViews.size() - 1; i >= 0; i--) {
+            if (!mViews.get(i).onTick(frameTimeNanos)) {
+                mViews.remove(i);
+            }
+        }
+
+        if (!mViews.isEmpty()) {
+            mChoreographer.postFrameCallback(this);
+            mPosted = true;
+        }
+    }
+
+    /**
+     * Start sending ticks to the view. It continues until the view is removed or no longer needs
+     * them.
+     *
+     * @param view View to tick.
+     */
+    void add(@NonNull MarqueeView view) {
+        if (!mViews.contains(view)) {
+            mViews.add(view);
+        }
+
+        if (!mPosted) {
+            mChoreographer.postFrameCallback(this);
+            mPosted = true;
+        }
+    }
+
+    /**
+     * Stop sending ticks to the view. The frame callback is removed with the last view.
+     *
+     * @param view View to stop.
+     */
+    void remove(@NonNull MarqueeView view) {
+        mViews.remove(view);
+
+        if (mViews.isEmpty() && mPosted) {
+            mChoreographer.removeFrameCallback(this);
+            mPosted = false;
+        }
+    }
+}
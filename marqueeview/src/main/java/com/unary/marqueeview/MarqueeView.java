@@ -18,18 +18,38 @@ package com.unary.marqueeview;
 import android.animation.Animator;
 import android.animation.AnimatorInflater;
 import android.animation.ValueAnimator;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.res.ColorStateList;
+import android.content.res.Configuration;
 import android.content.res.TypedArray;
 import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.LinearGradient;
 import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.Region;
+import android.graphics.Shader;
+import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.os.Trace;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.TextPaint;
+import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.util.Property;
+import android.util.SparseArray;
+import android.view.Display;
 import android.view.Gravity;
 import android.view.View;
+import android.view.ViewParent;
+import android.view.ViewTreeObserver;
+import android.view.animation.AnimationUtils;
 import android.view.animation.LinearInterpolator;
 
 import androidx.annotation.AnimatorRes;
@@ -41,6 +61,12 @@ import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 
 import java.text.Bidi;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 /**
  * A styleable marquee text widget that creates the classic effect but with a few more features.
@@ -52,6 +78,19 @@ import java.text.Bidi;
  *   app:textAnimator="reference"        // Animator to use for the text marquee
  *   app:repeatCount="integer"           // Default is ValueAnimator.INFINITE
  *   app:scrollSpeed="percent"           // Unit interval used to determine speed
+ *   app:cacheMode="enum"                // Render the scrolling text once. Default is none
+ *   app:sharedTicker="boolean"          // Scroll from a frame callback shared by all views
+ *   app:autoPause="boolean"             // Pause while the view cannot be seen. Default is true
+ *   app:pauseOnFocusLoss="boolean"      // Also pause while the window is unfocused
+ *   app:maxFrameRate="integer"          // Limit for redraws per second. Default is no limit
+ *   app:pixelSnap="boolean"             // Only redraw when moved by a whole pixel
+ *   app:renderMode="enum"               // Translate recorded text when scrolling. Default is normal
+ *   app:maxFeedLength="integer"         // Characters kept by appendMessage(). Default is no limit
+ *   app:separator="string"              // Text between repeats and messages. Default is whitespace
+ *   app:debugOverlay="boolean"          // Paint frame rate, scroll and cache state over the view
+ *   app:fadeLength="dimension"          // Fade scrolling text toward the edges. Default is none
+ *   app:orientation="enum"              // Slide lines up one at a time. Default is horizontal
+ *   app:adaptiveQuality="boolean"       // Lower quality on missed frames, heat and power saving
  *
  *   android:autoStart="boolean"         // If scrolling should start automatically
  *   android:enabled="boolean"           // Changes the view state
@@ -61,25 +100,76 @@ import java.text.Bidi;
  *   android:textSize="dimension"        // Text size used. Default is 14sp
  * </pre>
  * <p>See {@link R.styleable#MarqueeView MarqueeView Attributes}, {@link R.styleable#View View Attributes}</p>
+ *
+ * <p>Once the text has been measured, drawing a frame and advancing the default animator or shared
+ * ticker do not allocate. Vertical lines are the exception, as each line is measured when it
+ * comes into view.</p>
  */
 public class MarqueeView extends View implements ValueAnimator.AnimatorUpdateListener {
 
     public static final String WHITESPACE = "   ";
 
+    public static final int CACHE_NONE = 0;
+    public static final int CACHE_STRIP = 1;
+
+    public static final int RENDER_NORMAL = 0;
+    public static final int RENDER_TRANSLATE = 1;
+
+    public static final int ORIENTATION_HORIZONTAL = 0;
+    public static final int ORIENTATION_VERTICAL = 1;
+
+    public static final int QUALITY_FULL = 0;
+    public static final int QUALITY_REDUCED_RATE = 1;
+    public static final int QUALITY_PIXEL_SNAP = 2;
+    public static final int QUALITY_NO_EFFECTS = 3;
+    public static final int QUALITY_STATIC = 4;
+
     private static final int TEXT_COLOR = R.attr.colorControlNormal;
     private static final int TEXT_COLOR_DISABLED = R.attr.colorControlHighlight;
-    private static final float TEXT_SIZE = 14; // sp
+    static final float TEXT_SIZE = 14; // sp
     private static final int REPEAT_COUNT = ValueAnimator.INFINITE;
-    private static final float SCROLL_SPEED = 1f;
-    private static final int SCROLL_MULTIPLIER = 5;
-    private static final boolean AUTO_START = true;
-    private static final int GRAVITY = Gravity.NO_GRAVITY;
+    static final float SCROLL_SPEED = 1f;
+    static final int SCROLL_MULTIPLIER = 5;
+    static final boolean AUTO_START = true;
+    static final int GRAVITY = Gravity.NO_GRAVITY;
+    private static final int CACHE_MODE = CACHE_NONE;
+    private static final boolean SHARED_TICKER = false;
+    static final float NANOS_PER_MILLI = 1000000f;
+    private static final boolean AUTO_PAUSE = true;
+    private static final boolean PAUSE_ON_FOCUS_LOSS = false;
+    private static final int MAX_FRAME_RATE = 0;
+    private static final boolean PIXEL_SNAP = false;
+    private static final int FRAME_RATE_WINDOW = 1000; // ms
+    private static final int RENDER_MODE = RENDER_NORMAL;
+    private static final int MAX_FEED_LENGTH = 0;
+    static final String SEPARATOR = WHITESPACE;
+    private static final boolean DEBUG_OVERLAY = false;
+    private static final int FADE_LENGTH = 0;
+    private static final int ORIENTATION = ORIENTATION_HORIZONTAL;
+    private static final int LINE_DURATION = 2000; // ms
+    private static final boolean ADAPTIVE_QUALITY = false;
+    private static final int REDUCED_FRAME_RATE = 30;
+    private static final int RECOVERY_DELAY = 5 * QualityGovernor.WINDOW;
+    private static final float DEBUG_TEXT_SIZE = 10; // sp
+    private static final int DEBUG_BACKGROUND = 0xA0000000;
+
+    private static final int PAUSED_CLIENT = 1;
+    private static final int PAUSED_HIDDEN = 1 << 1;
+
+    // Measured text is handed back here, attached or not
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private static boolean sTraceEnabled;
 
     private String mText;
-    private String mScrollingText;
+    private Spanned mSpannedText;
+    private CharSequence mIconSource;
+    private SparseArray<Drawable> mIcons;
     private boolean mLtrText;
+    private boolean mScrollable;
     private ColorStateList mTextColor;
     private float mScroll; // Internal animator
+    private float mScrollRange;
     private float mOffset; // External animator
     private float mScrollSpeed;
     private boolean mAutoStart;
@@ -88,6 +178,74 @@ public class MarqueeView extends View implements ValueAnimator.AnimatorUpdateLis
     private Animator mTextAnimator;
     private boolean mTextAnimatorSet;
     private Rect mDrawingRect;
+    private TextMetrics mTextMetrics;
+    private int mCacheMode;
+    private StripCache mStripCache;
+    private ComponentCallbacks2 mComponentCallbacks;
+    private FutureTask<TextMetrics> mTextTask;
+    private boolean mKeepScroll;
+    private boolean mScrollDirty;
+    private int mAvailableWidth;
+    private boolean mSharedTicker;
+    private boolean mTicking;
+    private boolean mFrameRequested;
+    private long mTickerTime;
+    private int mTickerRepeats;
+    private boolean mAutoPause;
+    private boolean mPauseOnFocusLoss;
+    private int mPausedFlags;
+    private boolean mLegacyPaused;
+    private long mCurrentPlayTime;
+    private long mDuration;
+    private Rect mVisibleRect;
+    private ViewTreeObserver.OnScrollChangedListener mScrollChangedListener;
+    private ViewTreeObserver.OnGlobalLayoutListener mGlobalLayoutListener;
+    private OnPauseChangeListener mOnPauseChangeListener;
+    private int mMaxFrameRate;
+    private boolean mPixelSnap;
+    private long mInvalidateTime;
+    private int mDrawnPixel;
+    private int mFrameCount;
+    private long mFrameWindowStart;
+    private float mDrawnFrameRate;
+    private int mRenderMode;
+    private int mMaxFeedLength;
+    private ArrayDeque<Integer> mFeedLengths;
+    private String mSeparator;
+    private MarqueePlaylist mPlaylist;
+    private Executor mPlaylistExecutor;
+    private int mPlaylistIndex;
+    private int mPlaylistRepeats;
+    private Runnable mPlaylistRunnable;
+    private FutureTask<TextMetrics> mNextTask;
+    private String mNextText;
+    private TextMetrics mNextMetrics;
+    private MarqueePositions mPositions;
+    private long mPositionKey;
+    private FrameStats mFrameStats;
+    private OnFrameStatsListener mOnFrameStatsListener;
+    private int mFrameStatsWindow;
+    private boolean mDebugOverlay;
+    private Paint mDebugPaint;
+    private int mFadeLength;
+    private LinearGradient mFadeShader;
+    private int mFadeShaderLeft;
+    private int mFadeShaderRight;
+    private int mFadeShaderLength;
+    private int mFadeShaderColor;
+    private int mOrientation;
+    private LineSlots mLineSlots;
+    private int mLineBase;
+    private QualityGovernor mQualityGovernor;
+    private int mQualityLevel;
+    private OnQualityChangeListener mOnQualityChangeListener;
+    private Paint mEffectsPaint; // Only the effects are kept
+    private String mStaticText;
+    private float mStaticTextWidth;
+    private PowerStatus.Listener mPowerStatusListener;
+    private Runnable mQualityRunnable;
+    private MarqueeGroup mGroup;
+    private float mGroupPhase;
 
     /**
      * Static field to provide a property wrapper for the "offset" get and set methods.
@@ -158,6 +316,8 @@ public class MarqueeView extends View implements ValueAnimator.AnimatorUpdateLis
         int repeatCount;
         boolean enabled;
         float textSize;
+        CharSequence text;
+        boolean adaptiveQuality;
 
         try {
             animatorRes = typedArray.getResourceId(R.styleable.MarqueeView_textAnimator, 0);
@@ -166,16 +326,33 @@ public class MarqueeView extends View implements ValueAnimator.AnimatorUpdateLis
             mAutoStart = typedArray.getBoolean(R.styleable.MarqueeView_android_autoStart, AUTO_START);
             enabled = typedArray.getBoolean(R.styleable.MarqueeView_android_enabled, isEnabled());
             mGravity = typedArray.getInt(R.styleable.MarqueeView_android_gravity, GRAVITY);
-            mText = typedArray.getString(R.styleable.MarqueeView_android_text);
+            text = typedArray.getText(R.styleable.MarqueeView_android_text);
             mTextColor = typedArray.getColorStateList(R.styleable.MarqueeView_android_textColor);
             textSize = typedArray.getDimension(R.styleable.MarqueeView_android_textSize, dpToPixels(context, TEXT_SIZE));
+            mCacheMode = typedArray.getInt(R.styleable.MarqueeView_cacheMode, CACHE_MODE);
+            mSharedTicker = typedArray.getBoolean(R.styleable.MarqueeView_sharedTicker, SHARED_TICKER);
+            mAutoPause = typedArray.getBoolean(R.styleable.MarqueeView_autoPause, AUTO_PAUSE);
+            mPauseOnFocusLoss = typedArray.getBoolean(R.styleable.MarqueeView_pauseOnFocusLoss, PAUSE_ON_FOCUS_LOSS);
+            mMaxFrameRate = typedArray.getInt(R.styleable.MarqueeView_maxFrameRate, MAX_FRAME_RATE);
+            mPixelSnap = typedArray.getBoolean(R.styleable.MarqueeView_pixelSnap, PIXEL_SNAP);
+            mRenderMode = typedArray.getInt(R.styleable.MarqueeView_renderMode, RENDER_MODE);
+            mMaxFeedLength = typedArray.getInt(R.styleable.MarqueeView_maxFeedLength, MAX_FEED_LENGTH);
+            mSeparator = typedArray.getString(R.styleable.MarqueeView_separator);
+            mDebugOverlay = typedArray.getBoolean(R.styleable.MarqueeView_debugOverlay, DEBUG_OVERLAY);
+            mFadeLength = typedArray.getDimensionPixelSize(R.styleable.MarqueeView_fadeLength, FADE_LENGTH);
+            mOrientation = typedArray.getInt(R.styleable.MarqueeView_orientation, ORIENTATION);
+            adaptiveQuality = typedArray.getBoolean(R.styleable.MarqueeView_adaptiveQuality, ADAPTIVE_QUALITY);
         } finally {
             typedArray.recycle();
         }
 
         // Sanitize the input values
-        mText = mText != null ? mText : "";
+        mText = text != null ? text.toString() : "";
+        mSpannedText = text instanceof Spanned ? (Spanned) text : null;
+        mSeparator = mSeparator != null ? mSeparator : SEPARATOR;
         mScrollSpeed = mScrollSpeed > 0 ? mScrollSpeed : 0;
+        mMaxFeedLength = mMaxFeedLength > 0 ? mMaxFeedLength : 0;
+        mFadeLength = mFadeLength > 0 ? mFadeLength : 0;
 
         // Provide a default animator
         if (animatorRes != 0) {
@@ -192,94 +369,205 @@ public class MarqueeView extends View implements ValueAnimator.AnimatorUpdateLis
 
         // Provide some default colors
         if (mTextColor == null) {
-            int[][] states = new int[][]{new int[]{-android.R.attr.state_enabled}, new int[]{}};
-            int[] colors = new int[]{getAttrColor(context, TEXT_COLOR_DISABLED), getAttrColor(context, TEXT_COLOR)};
-
-            mTextColor = new ColorStateList(states, colors);
+            mTextColor = getDefaultTextColor(context);
         }
 
         // Initialize the drawing objects
-        mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        mTextPaint.setStyle(Paint.Style.FILL);
-        mTextPaint.setTextSize(textSize);
+        mTextPaint = createTextPaint(textSize);
 
         mDrawingRect = new Rect();
+        mTextMetrics = new TextMetrics();
+        mLineSlots = new LineSlots();
+        mStripCache = new StripCache();
+        mVisibleRect = new Rect();
+        mFeedLengths = new ArrayDeque<>();
+        mIcons = new SparseArray<>();
+        mScrollDirty = true;
+
+        // Strip memory is released when asked. Shared caches are trimmed once by CacheTrimmer.
+        mComponentCallbacks = new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                if (level >= TRIM_MEMORY_RUNNING_LOW) {
+                    mStripCache.release();
+                }
+            }
+
+            @Override
+            public void onConfigurationChanged(@NonNull Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                mStripCache.release();
+            }
+        };
+
+        // Scrolling parents can hide the view
+        mScrollChangedListener = new ViewTreeObserver.OnScrollChangedListener() {
+            @Override
+            public void onScrollChanged() {
+                updateAutoPause();
+            }
+        };
+
+        mGlobalLayoutListener = new ViewTreeObserver.OnGlobalLayoutListener() {
+            @Override
+            public void onGlobalLayout() {
+                updateAutoPause();
+            }
+        };
+
+        // Messages that fit are shown for a while
+        mPlaylistRunnable = new Runnable() {
+            @Override
+            public void run() {
+                if (mPausedFlags != 0) {
+                    schedulePlaylist();
+                } else {
+                    advancePlaylist();
+                }
+            }
+        };
+
+        // Try scrolling again after missed frames
+        mQualityRunnable = new Runnable() {
+            @Override
+            public void run() {
+                mQualityGovernor.recover();
+                updateQualityLevel();
+            }
+        };
 
         // Set a stateful text color
         setEnabled(enabled);
+        updateTextColor();
+        setAdaptiveQuality(adaptiveQuality);
     }
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        beginSection("MarqueeView#onMeasure");
+
         int width = getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec);
         int height = getDefaultSize(getSuggestedMinimumHeight(), heightMeasureSpec);
 
         setMeasuredDimension(width, height);
+        endSection();
     }
 
     @Override
     protected int getSuggestedMinimumWidth() {
-        float width = getTextWidth(mTextPaint, mText) + getPaddingLeft() + getPaddingRight();
+        ensureTextMetrics();
+
+        float textWidth = mOrientation == ORIENTATION_VERTICAL ? mLineSlots.getTextWidth() : mTextMetrics.getTextWidth();
+        float width = textWidth + getPaddingLeft() + getPaddingRight();
         return Math.max(super.getSuggestedMinimumWidth(), (int) Math.ceil(width));
     }
 
     @Override
     protected int getSuggestedMinimumHeight() {
-        float height = getFontHeight(mTextPaint) + getPaddingTop() + getPaddingBottom();
+        ensureTextMetrics();
+
+        float fontHeight = mOrientation == ORIENTATION_VERTICAL ? mLineSlots.getFontHeight() : mTextMetrics.getFontHeight();
+        float height = fontHeight + getPaddingTop() + getPaddingBottom();
         return Math.max(super.getSuggestedMinimumHeight(), (int) Math.ceil(height));
     }
 
     @Override
     protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
         super.onLayout(changed, left, top, right, bottom);
+        beginSection("MarqueeView#onLayout");
 
         // Setup values for onDraw()
-        mScrollingText = mText;
-        mLtrText = isLtrText(mText);
-        mScroll = 0;
-        mOffset = 0;
-
-        int paddingStart = getPaddingLeft();
-        int paddingEnd = getPaddingRight();
+        ensureTextMetrics();
+        updateDrawingRect();
 
-        // Use RTL if available
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
-            if (isLtrLayout(this)) {
-                paddingStart = getPaddingStart();
-                paddingEnd = getPaddingEnd();
-            } else {
-                paddingStart = getPaddingEnd();
-                paddingEnd = getPaddingStart();
-            }
+        if (mQualityLevel == QUALITY_STATIC) {
+            updateStaticText();
         }
 
-        // Similar to getDrawingRect()
-        mDrawingRect.set(paddingStart, getPaddingTop(),
-                getWidth() - paddingEnd, getHeight() - getPaddingBottom());
+        int availableWidth = getWidth() - getPaddingLeft() - getPaddingRight();
 
-        int minWidth = (int) Math.min(getTextWidth(mTextPaint, mText), mDrawingRect.width());
+        // Keep scrolling if nothing changed
+        if (mScrollDirty || availableWidth != mAvailableWidth) {
+            mScrollDirty = false;
+            mAvailableWidth = availableWidth;
+            mScrollable = mOrientation == ORIENTATION_VERTICAL ? mLineSlots.getLineCount() > 1
+                    : mTextMetrics.getTextWidth() > availableWidth;
 
-        // Apply the view gravity
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
-            Gravity.apply(mGravity, minWidth, (int) getFontHeight(mTextPaint), mDrawingRect, mDrawingRect, getLayoutDirection());
-        } else {
-            Gravity.apply(mGravity, minWidth, (int) getFontHeight(mTextPaint), mDrawingRect, mDrawingRect);
+            updateScroll();
+        }
+
+        endSection();
+    }
+
+    /**
+     * Set the scroll range for the current text and start, continue or stop the scroll to match. The
+     * position is kept if asked for by mKeepScroll.
+     */
+    private void updateScroll() {
+        // Prepared text continues the scroll
+        if (!mKeepScroll || !mScrollable) {
+            mScroll = 0;
+            mOffset = 0;
         }
 
+        mStripCache.invalidate();
+
         // Start the scroll animator
-        if (isScrollable()) {
-            mScrollingText = mScrollingText.concat(WHITESPACE);
+        if (mScrollable) {
+            float segmentWidth = getPeriod();
 
             if (!mTextAnimatorSet) {
-                mTextAnimator.setDuration((int) (getTextWidth(mTextPaint, mScrollingText) / mScrollSpeed * SCROLL_MULTIPLIER));
-                ((ValueAnimator) mTextAnimator).setFloatValues(0, -getTextWidth(mTextPaint, mScrollingText));
+                mScrollRange = -segmentWidth;
+                mTextAnimator.setDuration(getScrollDuration(segmentWidth));
+                ((ValueAnimator) mTextAnimator).setFloatValues(0, mScrollRange);
             }
 
-            mScrollingText = mScrollingText.concat(mScrollingText).concat(mScrollingText);
+            if (mKeepScroll && isScrollStarted()) {
+                seekTextAnimator(segmentWidth);
+            } else if (mAutoStart) {
+                startScroll();
 
-            if (mAutoStart && mTextAnimator != null) {
-                mTextAnimator.start();
+                // Continue from a restored position
+                if (mKeepScroll) {
+                    seekTextAnimator(segmentWidth);
+                }
             }
+        } else {
+            stopScroll();
+            schedulePlaylist();
+        }
+
+        mKeepScroll = false;
+    }
+
+    /**
+     * Find the area the text is drawn in. This applies the padding for the layout direction and the
+     * view gravity.
+     */
+    private void updateDrawingRect() {
+        // Lines are placed across the width when drawn
+        if (mOrientation == ORIENTATION_VERTICAL) {
+            int gravity = mGravity & Gravity.VERTICAL_GRAVITY_MASK | Gravity.FILL_HORIZONTAL;
+            findDrawingRect(this, gravity, mLineSlots.getMetrics(0), mDrawingRect);
+        } else {
+            findDrawingRect(this, mGravity, mTextMetrics, mDrawingRect);
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        getContext().getApplicationContext().registerComponentCallbacks(mComponentCallbacks);
+        CacheTrimmer.register(getContext());
+
+        getViewTreeObserver().addOnScrollChangedListener(mScrollChangedListener);
+        getViewTreeObserver().addOnGlobalLayoutListener(mGlobalLayoutListener);
+
+        if (mQualityGovernor != null) {
+            registerQualityListeners();
         }
     }
 
@@ -291,219 +579,2150 @@ public class MarqueeView extends View implements ValueAnimator.AnimatorUpdateLis
         if (mTextAnimator != null) {
             mTextAnimator.cancel();
         }
+
+        stopTicker();
+        removeCallbacks(mPlaylistRunnable);
+        mStripCache.release();
+        mScrollDirty = true;
+        getContext().getApplicationContext().unregisterComponentCallbacks(mComponentCallbacks);
+
+        getViewTreeObserver().removeOnScrollChangedListener(mScrollChangedListener);
+        getViewTreeObserver().removeOnGlobalLayoutListener(mGlobalLayoutListener);
+
+        if (mQualityGovernor != null) {
+            unregisterQualityListeners();
+        }
     }
 
     @Override
-    protected void onDraw(Canvas canvas) {
-        super.onDraw(canvas);
+    protected Parcelable onSaveInstanceState() {
+        SavedState savedState = new SavedState(super.onSaveInstanceState());
+        savedState.mScroll = mScroll;
 
-        // Calculate the difference
-        float width = getTextWidth(mTextPaint, mScrollingText) / 3;
-        float dx = (mScroll + (isLtrText(mText) ? mOffset : -mOffset)) % width - (isScrollable() ? width : 0);
+        return savedState;
+    }
 
-        // Mirror if text is RTL
-        if (!mLtrText) {
-            dx = mDrawingRect.width() - dx - width * 3;
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof SavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
         }
 
-        canvas.clipRect(mDrawingRect, Region.Op.INTERSECT);
-        canvas.drawText(mScrollingText, dx + mDrawingRect.left, getTextHeight(mTextPaint) + mDrawingRect.top, mTextPaint);
+        SavedState savedState = (SavedState) state;
+        super.onRestoreInstanceState(savedState.getSuperState());
+
+        restoreScroll(savedState.mScroll);
     }
 
+    @RequiresApi(api = Build.VERSION_CODES.N)
     @Override
-    public void onAnimationUpdate(ValueAnimator animation) {
-        mScroll = (float) animation.getAnimatedValue();
-        invalidate();
+    public void onVisibilityAggregated(boolean isVisible) {
+        super.onVisibilityAggregated(isVisible);
+        updateAutoPause();
+    }
+
+    @Override
+    protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateAutoPause();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateAutoPause();
+    }
+
+    @Override
+    public void onWindowFocusChanged(boolean hasWindowFocus) {
+        super.onWindowFocusChanged(hasWindowFocus);
+        updateAutoPause();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        beginSection("MarqueeView#onDraw");
+
+        long drawStart = mFrameStats != null ? System.nanoTime() : 0;
+        int saveCount = canvas.save();
+
+        drawMarquee(canvas);
+        canvas.restoreToCount(saveCount);
+
+        if (mFrameStats != null) {
+            addFrameStats(System.nanoTime() - drawStart);
+        }
+
+        if (mDebugOverlay) {
+            drawDebugOverlay(canvas);
+        }
+
+        endSection();
     }
 
     @Override
-    public void setEnabled(boolean enabled) {
-        super.setEnabled(enabled);
-        setTextColor(mTextColor);
+    public void requestLayout() {
+        super.requestLayout();
+
+        if (mFrameStats != null) {
+            mFrameStats.addLayoutRequest();
+        }
     }
 
     /**
-     * Determine if the current text is long enough to be scrollable in the view configuration.
+     * Draw the text for the current scroll position.
      *
-     * @return True if text is scrollable.
+     * @param canvas Canvas to draw on.
      */
-    public boolean isScrollable() {
-        return getTextWidth(getTextPaint(), getText()) > getWidth() - getPaddingLeft() - getPaddingRight();
+    private void drawMarquee(Canvas canvas) {
+        // Paint changed since layout
+        if (ensureTextMetrics()) {
+            requestLayout();
+        }
+
+        mDrawnPixel = Math.round(mScroll + (mLtrText ? mOffset : -mOffset));
+        countFrame();
+
+        canvas.clipRect(mDrawingRect, Region.Op.INTERSECT);
+
+        if (mOrientation == ORIENTATION_VERTICAL) {
+            drawLines(canvas);
+            return;
+        }
+
+        float baseline = getTextHeight(mTextPaint) + mDrawingRect.top + mTextMetrics.getBaselineShift();
+
+        // Text that fits is drawn once
+        if (!mScrollable) {
+            float dx = mLtrText ? 0 : mDrawingRect.width() - mTextMetrics.getTextWidth();
+            mTextMetrics.draw(canvas, mTextPaint, dx + mDrawingRect.left, baseline);
+            return;
+        }
+
+        // Governor stopped the scroll
+        if (mQualityLevel == QUALITY_STATIC) {
+            float dx = mLtrText ? 0 : mDrawingRect.width() - mStaticTextWidth;
+            canvas.drawText(mStaticText, dx + mDrawingRect.left, baseline, mTextPaint);
+            return;
+        }
+
+        TextMetrics nextMetrics = getNextMetrics();
+
+        // Blit the cache instead
+        if ((mCacheMode == CACHE_STRIP || mRenderMode == RENDER_TRANSLATE) && nextMetrics == null
+                && mFadeLength == 0 && drawStripCache(canvas, baseline)) {
+            return;
+        }
+
+        float width = mTextMetrics.getSegmentWidth();
+        float dx = getScrollPosition(width);
+        boolean fading = applyFadeShader();
+
+        if (nextMetrics != null) {
+            // Next message follows the last repeat
+            drawTransition(canvas, dx, baseline, nextMetrics);
+        } else {
+            // Mirror if text is RTL
+            if (!mLtrText) {
+                dx = mDrawingRect.width() - dx - width * 2;
+            }
+
+            drawSegment(canvas, mText, mTextMetrics, dx, baseline);
+            drawSegment(canvas, mText, mTextMetrics, dx + width, baseline);
+        }
+
+        if (fading) {
+            mTextPaint.setShader(null);
+        }
     }
 
     /**
-     * Utility method to find the pixel resolution of a density pixel value.
+     * Draw the visible lines for the current scroll position. The next line is measured once the
+     * first one has slid out of view.
      *
-     * @param context Context given for the metrics. This determines the resources and theme.
-     * @param dp      Density pixels to convert.
-     * @return The pixel resolution.
+     * @param canvas Canvas to draw on.
      */
-    private static int dpToPixels(Context context, @Dimension float dp) {
-        return (int) (dp * context.getResources().getDisplayMetrics().density + 0.5);
+    private void drawLines(Canvas canvas) {
+        float height = mLineSlots.getFontHeight();
+        float position = mScroll + mOffset;
+        int line = height > 0 ? (int) Math.floor(-position / height) : 0;
+
+        mLineSlots.moveTo(mTextPaint, mLineBase + line);
+
+        float dy = position + line * height;
+        drawLine(canvas, mLineSlots.getMetrics(0), dy);
+
+        if (mScrollable) {
+            drawLine(canvas, mLineSlots.getMetrics(1), dy + height);
+        }
     }
 
     /**
-     * Utility method to find the density pixel value of a pixel resolution.
+     * Draw one line placed across the drawing rect by the horizontal gravity. Without gravity it is
+     * placed like text that fits.
      *
-     * @param context Context given for the metrics. This determines the resources and theme.
-     * @param px      Pixel resolution to convert.
-     * @return The density pixels.
+     * @param canvas  Canvas to draw on.
+     * @param metrics Metrics for the line.
+     * @param dy      Vertical position within the drawing rect.
      */
-    @Dimension
-    private static float pixelsToDp(Context context, int px) {
-        return px / context.getResources().getDisplayMetrics().density;
+    private void drawLine(Canvas canvas, TextMetrics metrics, float dy) {
+        float free = mDrawingRect.width() - metrics.getTextWidth();
+        float baseline = getTextHeight(mTextPaint) + mDrawingRect.top + dy;
+        int gravity = mGravity;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            gravity = Gravity.getAbsoluteGravity(mGravity, getLayoutDirection());
+        }
+
+        float dx;
+
+        switch (gravity & Gravity.HORIZONTAL_GRAVITY_MASK) {
+            case Gravity.LEFT:
+                dx = 0;
+                break;
+            case Gravity.RIGHT:
+                dx = free;
+                break;
+            case Gravity.CENTER_HORIZONTAL:
+                dx = free / 2;
+                break;
+            default:
+                dx = metrics.isLtrText() ? 0 : free;
+        }
+
+        metrics.draw(canvas, mTextPaint, dx + mDrawingRect.left, baseline);
     }
 
     /**
-     * Utility method to find a color as defined in the attribute of a theme.
+     * Set a gradient on the text paint that fades the text toward both edges of the drawing rect.
+     * The gradient is fixed to the view, so mirrored RTL text passes through the same fades. It is
+     * only rebuilt when the drawing rect, fade length or text color changes.
      *
-     * @param context   Context given for the attribute. This determines the resources and theme.
-     * @param attrResId The color resource.
-     * @return An ARGB color integer.
+     * @return True if the shader was set and must be cleared after drawing.
      */
-    @ColorInt
-    private static int getAttrColor(Context context, @AttrRes int attrResId) {
-        TypedArray typedArray = context.getTheme().obtainStyledAttributes(new int[]{attrResId});
-        int color = typedArray.getColor(0, 0);
-        typedArray.recycle();
+    private boolean applyFadeShader() {
+        if (mFadeLength == 0 || mDrawingRect.isEmpty()) return false;
+
+        int color = mTextPaint.getColor();
+
+        if (mFadeShader == null || mFadeShaderLeft != mDrawingRect.left || mFadeShaderRight != mDrawingRect.right
+                || mFadeShaderLength != mFadeLength || mFadeShaderColor != color) {
+            float edge = Math.min(mFadeLength, mDrawingRect.width() / 2f) / mDrawingRect.width();
+            int transparent = color & 0x00FFFFFF;
+
+            mFadeShader = new LinearGradient(mDrawingRect.left, 0, mDrawingRect.right, 0,
+                    new int[]{transparent, color, color, transparent}, new float[]{0, edge, 1 - edge, 1},
+                    Shader.TileMode.CLAMP);
+            mFadeShaderLeft = mDrawingRect.left;
+            mFadeShaderRight = mDrawingRect.right;
+            mFadeShaderLength = mFadeLength;
+            mFadeShaderColor = color;
+        }
 
-        return color;
+        mTextPaint.setShader(mFadeShader);
+
+        return true;
     }
 
     /**
-     * A standardized answer to the question "what is the text width?" This may not be an exact
-     * measurement of the text content.
+     * Draw the current message followed by the next one in the playlist. The next message repeats
+     * until the drawing rect is filled.
      *
-     * @param paint Paint object
-     * @param text  Text to measure.
-     * @return Text width in pixels.
-     * @see Paint#getTextBounds(String, int, int, Rect)
+     * @param canvas      Canvas to draw on.
+     * @param dx          Scroll position within the current message.
+     * @param baseline    Baseline of the text.
+     * @param nextMetrics Metrics for the next message.
      */
-    protected static float getTextWidth(@NonNull Paint paint, String text) {
-        return paint.measureText(text);
+    private void drawTransition(Canvas canvas, float dx, float baseline, TextMetrics nextMetrics) {
+        float width = mTextMetrics.getSegmentWidth();
+        float nextWidth = nextMetrics.getSegmentWidth();
+        float visibleWidth = mDrawingRect.width();
+
+        if (mLtrText) {
+            drawSegment(canvas, mText, mTextMetrics, dx, baseline);
+
+            for (float x = dx + width; x < visibleWidth && nextWidth > 0; x += nextWidth) {
+                drawSegment(canvas, mNextText, nextMetrics, x, baseline);
+            }
+        } else {
+            float x = visibleWidth - dx - width;
+            drawSegment(canvas, mText, mTextMetrics, x, baseline);
+
+            for (x -= nextWidth; x + nextWidth > 0 && nextWidth > 0; x -= nextWidth) {
+                drawSegment(canvas, mNextText, nextMetrics, x, baseline);
+            }
+        }
     }
 
     /**
-     * A standardized answer to the question "what is the text height?" This may not be an exact
-     * measurement of the text content.
+     * Draw one scrolling period of the text. Only the characters within the drawing rect are drawn
+     * when the text has a single direction.
      *
-     * @param paint Paint object.
-     * @return Text height in pixels.
-     * @see Paint#getTextBounds(String, int, int, Rect)
+     * @param canvas   Canvas to draw on.
+     * @param text     Text to draw.
+     * @param metrics  Metrics for the text.
+     * @param x        Left position of the period within the drawing rect.
+     * @param baseline Baseline of the text.
      */
-    protected static float getTextHeight(@NonNull Paint paint) {
-        return paint.getTextSize();
+    private void drawSegment(Canvas canvas, String text, TextMetrics metrics, float x, float baseline) {
+        drawSegment(canvas, mTextPaint, text, metrics, mDrawingRect, mLtrText, x, baseline);
     }
 
     /**
-     * Get the total font height. This is more than the height of the current text content and only
-     * used to determine the measured view.
+     * Get the current scroll position within one period of the text. This combines the internal
+     * animator and external offset.
      *
-     * @param paint Paint object.
-     * @return Font height in pixels.
+     * @param width Width of one scrolling period.
+     * @return Position from the period width to zero.
      */
-    protected static float getFontHeight(Paint paint) {
-        return paint.getFontMetrics().bottom - paint.getFontMetrics().top;
+    private float getScrollPosition(float width) {
+        float dx = (isPixelSnapped() ? mDrawnPixel : mScroll + (mLtrText ? mOffset : -mOffset)) % width;
+        return dx > 0 ? dx - width : dx;
     }
 
     /**
-     * Check if the layout direction for the given view or configuration is left-to-right.
-     *
-     * @param view View to check.
-     * @return True if likely LTR.
+     * Redraw after the scroll has moved. This is skipped if the position has not changed by a whole
+     * pixel when snapping, or if the frame rate limit has been reached.
      */
-    protected static boolean isLtrLayout(View view) {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
-            if (view.isLayoutDirectionResolved()) {
-                return view.getLayoutDirection() == LAYOUT_DIRECTION_LTR;
-            }
+    private void invalidateScroll() {
+        if (mQualityGovernor != null && mQualityGovernor.onFrame(AnimationUtils.currentAnimationTimeMillis())) {
+            updateQualityLevel();
         }
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
-            return view.getResources().getConfiguration().getLayoutDirection() == LAYOUT_DIRECTION_LTR;
+        if (isPixelSnapped() && Math.round(mScroll + (mLtrText ? mOffset : -mOffset)) == mDrawnPixel) {
+            skipTick();
+            return;
         }
 
-        return true;
-    }
+        int maxFrameRate = mMaxFrameRate;
 
-    /**
-     * Check if the base direction of the given text has a strong left-to-right language bias.
-     *
-     * @param text Sample text paragraph.
-     * @return True if likely LTR.
-     */
-    protected static boolean isLtrText(@NonNull String text) {
-        Bidi bidi = new Bidi(text, Bidi.DIRECTION_DEFAULT_LEFT_TO_RIGHT);
-        return bidi.baseIsLeftToRight();
+        if (mQualityLevel >= QUALITY_REDUCED_RATE) {
+            maxFrameRate = maxFrameRate > 0 ? Math.min(maxFrameRate, REDUCED_FRAME_RATE) : REDUCED_FRAME_RATE;
+        }
+
+        if (maxFrameRate > 0) {
+            long time = AnimationUtils.currentAnimationTimeMillis();
+
+            // Allow a little early for frame jitter
+            if (time - mInvalidateTime < 900 / maxFrameRate) {
+                skipTick();
+                return;
+            }
+
+            mInvalidateTime = time;
+        }
+
+        invalidate();
     }
 
     /**
-     * Utility method to find the preferred measurements of this view for the view parent.
+     * Add a drawn frame to the frame statistics and report them if the window has ended.
      *
-     * @param defaultSize Default size of the view.
-     * @param measureSpec Constraints imposed by the parent.
-     * @return Preferred size for this view.
-     * @see View#getDefaultSize(int, int)
+     * @param drawTime Time spent drawing in nanoseconds.
      */
-    public static int getDefaultSize(int defaultSize, int measureSpec) {
-        int mode = MeasureSpec.getMode(measureSpec);
-        int size = MeasureSpec.getSize(measureSpec);
+    private void addFrameStats(long drawTime) {
+        mFrameStats.addFrame(drawTime, mScrollable && mPausedFlags == 0);
 
-        switch (mode) {
-            case MeasureSpec.EXACTLY:
-                return size;
-            case MeasureSpec.AT_MOST:
-                return Math.min(size, defaultSize);
-            case MeasureSpec.UNSPECIFIED:
-            default:
-                return defaultSize;
+        if (mFrameStats.finish(AnimationUtils.currentAnimationTimeMillis(), mFrameStatsWindow)) {
+            mOnFrameStatsListener.onFrameStats(this, mFrameStats);
+            mFrameStats.reset(AnimationUtils.currentAnimationTimeMillis());
         }
     }
 
     /**
-     * Get the marquee text. If the contents fits within the view width no marquee will occur.
+     * Paint the frame rate, scroll position, scrollability and cache state over the view. This
+     * allocates and is only meant for debugging.
      *
-     * @return Text for the marquee
+     * @param canvas Canvas to draw on.
      */
-    @NonNull
-    public String getText() {
-        return mText;
+    private void drawDebugOverlay(Canvas canvas) {
+        if (mDebugPaint == null) {
+            mDebugPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            mDebugPaint.setTextSize(dpToPixels(getContext(), DEBUG_TEXT_SIZE));
+        }
+
+        float segmentWidth = mTextMetrics.getSegmentWidth();
+        String cacheState = mRenderMode == RENDER_TRANSLATE ? "translate"
+                : mCacheMode == CACHE_STRIP ? "strip" : "no cache";
+
+        if (mRenderMode == RENDER_TRANSLATE || mCacheMode == CACHE_STRIP) {
+            cacheState += mStripCache.isValid() ? ", valid" : ", stale";
+        }
+
+        String[] lines = new String[]{
+                String.format(Locale.US, "%.1f fps", mDrawnFrameRate),
+                String.format(Locale.US, "scroll %.1f / %.1f", getScrollPosition(segmentWidth), segmentWidth),
+                (mScrollable ? "scrollable" : "fits") + (mPausedFlags != 0 ? ", paused" : ""),
+                cacheState
+        };
+
+        Paint.FontMetrics fontMetrics = mDebugPaint.getFontMetrics();
+        float lineHeight = fontMetrics.bottom - fontMetrics.top;
+        float width = 0;
+
+        for (String line : lines) {
+            width = Math.max(width, mDebugPaint.measureText(line));
+        }
+
+        mDebugPaint.setColor(DEBUG_BACKGROUND);
+        canvas.drawRect(0, 0, width + lineHeight / 2, lineHeight * lines.length, mDebugPaint);
+        mDebugPaint.setColor(Color.WHITE);
+
+        for (int i = 0; i < lines.length; i++) {
+            canvas.drawText(lines[i], lineHeight / 4, lineHeight * i - fontMetrics.top, mDebugPaint);
+        }
     }
 
     /**
-     * Set the marquee text. If the contents fits within the view width no marquee will occur.
-     *
-     * @param text Text for the marquee.
+     * Count a scroll update that did not redraw the view.
      */
-    public void setText(@NonNull String text) {
-        mText = mText != null ? text : "";
-        requestLayout();
+    private void skipTick() {
+        if (mFrameStats != null) {
+            mFrameStats.addSkippedTick();
+        }
     }
 
     /**
-     * Get the marquee text color. The default and disabled states are used for the paint color.
-     *
-     * @return ColorStateList color.
+     * Count a drawn frame toward the drawn frame rate.
      */
-    @NonNull
-    public ColorStateList getTextColor() {
-        return mTextColor;
+    private void countFrame() {
+        long time = AnimationUtils.currentAnimationTimeMillis();
+        long elapsed = time - mFrameWindowStart;
+
+        mFrameCount++;
+
+        if (elapsed >= FRAME_RATE_WINDOW) {
+            mDrawnFrameRate = mFrameCount * 1000f / elapsed;
+            mFrameCount = 0;
+            mFrameWindowStart = time;
+        }
     }
 
     /**
-     * Set the marquee text color. The default and disabled states are used for the paint color.
+     * Draw the scrolling text from the strip cache. One period of text is rendered when needed and
+     * then drawn twice to fill the view. When translating, both periods are drawn from one node and
+     * only its translation changes.
      *
-     * @param textColor ColorStateList color.
+     * @param canvas   Canvas to draw on.
+     * @param baseline Baseline of the text.
+     * @return True if the cache was drawn.
      */
-    public void setTextColor(@NonNull ColorStateList textColor) {
-        mTextColor = textColor;
+    private boolean drawStripCache(Canvas canvas, float baseline) {
+        // Translating falls back on software canvases
+        if (mCacheMode != CACHE_STRIP && !canvas.isHardwareAccelerated()) {
+            return false;
+        }
 
-        int statefulColor = textColor.getColorForState(getDrawableState(), textColor.getDefaultColor());
-        mTextPaint.setColor(statefulColor);
+        float width = mTextMetrics.getSegmentWidth();
+        int renderCount = mStripCache.getRenderCount();
 
+        if (!mStripCache.prepare(canvas, mTextPaint, mLtrText, width, mTextMetrics)) {
+            return false;
+        }
+
+        if (mFrameStats != null && mStripCache.getRenderCount() != renderCount) {
+            mFrameStats.addCacheRebuild();
+        }
+
+        float dx = getScrollPosition(width);
+
+        // Mirror if text is RTL
+        if (!mLtrText) {
+            dx = mDrawingRect.width() - dx - width * 2;
+        }
+
+        if (mRenderMode == RENDER_TRANSLATE
+                && mStripCache.drawTranslated(canvas, dx + mDrawingRect.left, baseline, width, mTextMetrics)) {
+            return true;
+        }
+
+        mStripCache.draw(canvas, dx + mDrawingRect.left, baseline, mTextMetrics);
+        mStripCache.draw(canvas, dx + mDrawingRect.left + width, baseline, mTextMetrics);
+
+        return true;
+    }
+
+    @Override
+    public void onAnimationUpdate(ValueAnimator animation) {
+        float scroll;
+
+        // Avoid boxing the default animator value
+        if (mTextAnimatorSet) {
+            scroll = (float) animation.getAnimatedValue();
+        } else if (mOrientation == ORIENTATION_VERTICAL) {
+            scroll = getLineScroll(animation.getAnimatedFraction());
+
+            // Wrapped into the next line
+            if (scroll > mScroll - mScrollRange / 2) {
+                mLineBase++;
+            }
+        } else {
+            scroll = animation.getAnimatedFraction() * mScrollRange;
+        }
+
+        // Default animator wrapped into the next period
+        boolean repeated = mPlaylist != null && !mTextAnimatorSet
+                && scroll > mScroll + mTextMetrics.getSegmentWidth() / 2;
+
+        mScroll = scroll;
+
+        if (repeated) {
+            onScrollRepeat();
+        }
+
+        invalidateScroll();
+    }
+
+    @Override
+    protected void drawableStateChanged() {
+        super.drawableStateChanged();
+
+        // Called before init() when disabled
+        if (mTextPaint != null) {
+            updateTextColor();
+        }
+    }
+
+    /**
+     * Determine if the current text is long enough to be scrollable in the view configuration.
+     *
+     * @return True if text is scrollable.
+     */
+    public boolean isScrollable() {
+        ensureTextMetrics();
+        return mScrollable;
+    }
+
+    /**
+     * Advance the scroll from the shared ticker. This is the equivalent of running the default
+     * animator, including its repeat count.
+     *
+     * @param frameTimeNanos Time of the frame.
+     * @return False if the view no longer needs ticks.
+     */
+    boolean onTick(long frameTimeNanos) {
+        if (mFrameRequested) {
+            mFrameRequested = onFrame(frameTimeNanos);
+        }
+
+        if (!mTicking) return mFrameRequested;
+
+        if (!mScrollable || getWindowToken() == null) {
+            mTicking = false;
+            return mFrameRequested;
+        }
+
+        // Continue from here when resumed, which adds the view again
+        if (mPausedFlags != 0) {
+            mTickerTime = 0;
+            return mFrameRequested;
+        }
+
+        // Position comes from the group clock
+        if (mGroup != null) {
+            float width = mTextMetrics.getSegmentWidth();
+            float scroll = mGroup.getScroll(this, frameTimeNanos, width);
+            boolean repeated = scroll > mScroll + width / 2;
+
+            mScroll = scroll;
+
+            if (repeated && mPlaylist != null) {
+                onScrollRepeat();
+
+                // Next message may fit
+                if (!mScrollable) {
+                    mTicking = false;
+                    return mFrameRequested;
+                }
+            }
+
+            invalidateScroll();
+            return true;
+        }
+
+        if (mTickerTime != 0) {
+            float width = mTextMetrics.getSegmentWidth();
+            mScroll -= (frameTimeNanos - mTickerTime) / NANOS_PER_MILLI * mScrollSpeed / SCROLL_MULTIPLIER;
+
+            // Each period is one repeat
+            while (mScroll <= -width) {
+                mScroll += width;
+
+                if (mPlaylist != null) {
+                    onScrollRepeat();
+
+                    // Next message may fit
+                    if (!mScrollable) {
+                        mTicking = false;
+                        return mFrameRequested;
+                    }
+
+                    width = mTextMetrics.getSegmentWidth();
+                }
+
+                if (getRepeatCount() != ValueAnimator.INFINITE && ++mTickerRepeats > getRepeatCount()) {
+                    mScroll = 0;
+                    mTicking = false;
+                    invalidate();
+
+                    return mFrameRequested;
+                }
+            }
+        }
+
+        mTickerTime = frameTimeNanos;
+        invalidateScroll();
+
+        return true;
+    }
+
+    /**
+     * Step motion that is not part of the scroll, such as a fling, for the frame. It is called from
+     * the shared ticker before the scroll is advanced while frames are requested.
+     *
+     * @param frameTimeNanos Time of the frame.
+     * @return True if more frames are needed.
+     * @see #requestFrames()
+     */
+    boolean onFrame(long frameTimeNanos) {
+        return false;
+    }
+
+    /**
+     * Receive onFrame() from the shared ticker until it returns false. This works whether or not the
+     * scroll itself uses the ticker.
+     */
+    void requestFrames() {
+        mFrameRequested = true;
+        MarqueeTicker.getInstance().add(this);
+    }
+
+    /**
+     * Stop receiving onFrame() from the shared ticker. The scroll keeps its ticks.
+     */
+    void cancelFrames() {
+        if (mFrameRequested) {
+            mFrameRequested = false;
+
+            if (!mTicking) {
+                MarqueeTicker.getInstance().remove(this);
+            }
+        }
+    }
+
+    /**
+     * Get the width of one scrolling period of the current text.
+     *
+     * @return Period width in pixels.
+     */
+    float getSegmentWidth() {
+        ensureTextMetrics();
+        return mTextMetrics.getSegmentWidth();
+    }
+
+    /**
+     * Get the speed of the default scroll.
+     *
+     * @return Speed in pixels per second.
+     */
+    float getScrollVelocity() {
+        return mScrollSpeed * 1000 / SCROLL_MULTIPLIER;
+    }
+
+    /**
+     * Get the group the view scrolls in lockstep with.
+     *
+     * @return Group of the view. This may be null.
+     */
+    @Nullable
+    MarqueeGroup getGroup() {
+        return mGroup;
+    }
+
+    /**
+     * Get the distance the view is ahead of its group. It is kept here so that the group does not
+     * have to find the view on each frame.
+     *
+     * @return Phase offset in pixels.
+     */
+    float getGroupPhase() {
+        return mGroupPhase;
+    }
+
+    /**
+     * Set the distance the view is ahead of its group. It takes effect on the next frame.
+     *
+     * @param phase Phase offset in pixels.
+     */
+    void setGroupPhase(float phase) {
+        mGroupPhase = phase;
+    }
+
+    /**
+     * Join or leave a group. A running scroll is restarted so that it moves between the shared
+     * ticker and the animator as needed.
+     *
+     * @param group Group to join, or null to leave.
+     * @param phase Phase offset in pixels.
+     * @see MarqueeGroup#add(MarqueeView, float)
+     */
+    void setGroup(@Nullable MarqueeGroup group, float phase) {
+        boolean started = isScrollStarted();
+        float scroll = mScroll;
+
+        if (started) {
+            stopScroll();
+        }
+
+        mGroup = group;
+        mGroupPhase = phase;
+
+        if (started) {
+            startScroll();
+
+            // Leave from the current position
+            if (group == null) {
+                mScroll = scroll;
+                seekTextAnimator(mTextMetrics.getSegmentWidth());
+            }
+        }
+    }
+
+    /**
+     * Pause the scroll. It stays paused until resume() is called, even if the view is hidden and
+     * shown again in the meantime.
+     */
+    protected void pause() {
+        setPausedFlag(PAUSED_CLIENT, true);
+    }
+
+    /**
+     * Resume the scroll from where it was paused. It stays paused while the view cannot be seen.
+     */
+    protected void resume() {
+        setPausedFlag(PAUSED_CLIENT, false);
+    }
+
+    /**
+     * Check if the view can be seen and pause or resume the scroll to match. A view is hidden if it
+     * or a parent is not visible, its window is hidden, or it is scrolled off-screen. An unfocused
+     * window only counts when asked for, since windows in multi-window mode, on other displays or
+     * that are not focusable can still be seen.
+     */
+    private void updateAutoPause() {
+        if (mVisibleRect == null) return;
+
+        boolean hidden = mAutoPause && getWindowToken() != null && (!isShown()
+                || getWindowVisibility() != VISIBLE || (mPauseOnFocusLoss && !hasWindowFocus())
+                || !getGlobalVisibleRect(mVisibleRect));
+
+        setPausedFlag(PAUSED_HIDDEN, hidden);
+    }
+
+    /**
+     * Set or clear one of the reasons for pausing. The scroll runs only when there are none.
+     *
+     * @param flag   Reason for pausing.
+     * @param paused True to set.
+     */
+    private void setPausedFlag(int flag, boolean paused) {
+        int pausedFlags = paused ? mPausedFlags | flag : mPausedFlags & ~flag;
+        boolean changed = (pausedFlags != 0) != (mPausedFlags != 0);
+
+        mPausedFlags = pausedFlags;
+        if (!changed) return;
+
+        // Paused time is not a missed frame
+        if (mQualityGovernor != null) {
+            mQualityGovernor.resetFrames();
+        }
+
+        if (paused) {
+            pauseAnimator();
+        } else {
+            resumeAnimator();
+        }
+
+        if (mOnPauseChangeListener != null) {
+            mOnPauseChangeListener.onPauseChanged(this, paused);
+        }
+    }
+
+    /**
+     * Pause animator and provide some backwards compatibility if instance of ValueAnimator. A
+     * ticked scroll leaves the shared ticker until resumed, so a paused view costs no frames.
+     */
+    private void pauseAnimator() {
+        if (mTicking) {
+            mTickerTime = 0;
+
+            // Requested frames keep the ticker
+            if (!mFrameRequested) {
+                MarqueeTicker.getInstance().remove(this);
+            }
+        }
+
+        Animator animator = mTextAnimator;
+        if (animator == null) return;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            animator.pause();
+            return;
+        }
+
+        if (!mLegacyPaused && animator instanceof ValueAnimator) {
+            mLegacyPaused = true;
+            mCurrentPlayTime = ((ValueAnimator) animator).getCurrentPlayTime();
+            mDuration = animator.getDuration();
+            animator.setDuration(0);
+        }
+    }
+
+    /**
+     * Resume animator and provide some backwards compatibility if instance of ValueAnimator. A
+     * ticked scroll is given back to the shared ticker.
+     */
+    private void resumeAnimator() {
+        if (mTicking) {
+            mTickerTime = 0;
+            MarqueeTicker.getInstance().add(this);
+        }
+
+        Animator animator = mTextAnimator;
+        if (animator == null) return;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            animator.resume();
+            return;
+        }
+
+        if (mLegacyPaused && animator instanceof ValueAnimator) {
+            animator.setDuration(mDuration);
+            ((ValueAnimator) animator).setCurrentPlayTime(mCurrentPlayTime);
+            mLegacyPaused = false;
+        }
+    }
+
+    /**
+     * Start the scroll with the shared ticker or the animator, whichever is in use. It starts paused
+     * if there is a reason to.
+     */
+    private void startScroll() {
+        if (mQualityLevel == QUALITY_STATIC) return;
+
+        beginSection("MarqueeView#startScroll");
+
+        if (mQualityGovernor != null) {
+            mQualityGovernor.resetFrames();
+        }
+
+        if (isTicked()) {
+            startTicker();
+        } else if (mTextAnimator != null) {
+            mTextAnimator.start();
+
+            if (mPausedFlags != 0) {
+                pauseAnimator();
+            }
+        }
+
+        endSection();
+    }
+
+    /**
+     * Stop the shared ticker or the default animator. A client animator is left alone.
+     */
+    private void stopScroll() {
+        stopTicker();
+
+        if (!mTextAnimatorSet && mTextAnimator != null) {
+            mTextAnimator.cancel();
+        }
+    }
+
+    /**
+     * Check if the scroll has been started by the shared ticker or the animator, whichever is in use.
+     *
+     * @return True if started.
+     */
+    private boolean isScrollStarted() {
+        if (isTicked()) {
+            return mTicking;
+        }
+
+        return mTextAnimator != null && mTextAnimator.isStarted();
+    }
+
+    /**
+     * Get the default animator duration for one period. The speed is the same for any text width.
+     * Vertical lines are also held before sliding.
+     *
+     * @param width Width of one scrolling period.
+     * @return Duration in milliseconds.
+     */
+    private int getScrollDuration(float width) {
+        long duration = (long) Math.min(width / mScrollSpeed * SCROLL_MULTIPLIER, Integer.MAX_VALUE);
+
+        // Speed of zero holds without overflowing
+        if (mOrientation == ORIENTATION_VERTICAL) {
+            duration += (long) Math.min(LINE_DURATION / mScrollSpeed, Integer.MAX_VALUE);
+        }
+
+        return (int) Math.min(duration, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get the scroll position of a vertical line for the default animator. The line is held for the
+     * start of the period and then slides up at the scroll speed.
+     *
+     * @param fraction Fraction of the period.
+     * @return Position from zero to the scroll range.
+     */
+    private float getLineScroll(float fraction) {
+        float duration = mTextAnimator.getDuration();
+        float slideDuration = -mScrollRange / mScrollSpeed * SCROLL_MULTIPLIER;
+        float slide = (fraction * duration - (duration - slideDuration)) / slideDuration;
+
+        return slide > 0 ? Math.min(slide, 1) * mScrollRange : 0;
+    }
+
+    /**
+     * Get the length of one scrolling period. This is the segment width, or the line height when
+     * vertical.
+     *
+     * @return Period length in pixels.
+     */
+    private float getPeriod() {
+        return mOrientation == ORIENTATION_VERTICAL ? mLineSlots.getFontHeight() : mTextMetrics.getSegmentWidth();
+    }
+
+    /**
+     * Check if the scroll is snapped to whole pixels, either as asked for or by the quality level.
+     *
+     * @return True if snapped.
+     */
+    private boolean isPixelSnapped() {
+        return mPixelSnap || mQualityLevel >= QUALITY_PIXEL_SNAP;
+    }
+
+    /**
+     * Listen for the power save mode and thermal status shared by the process. The refresh rate of
+     * the display is read for counting missed frames.
+     */
+    private void registerQualityListeners() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            Display display = getDisplay();
+
+            if (display != null) {
+                mQualityGovernor.setRefreshRate(display.getRefreshRate());
+            }
+        }
+
+        PowerStatus.addListener(getContext(), mPowerStatusListener);
+        mPowerStatusListener.onPowerStatusChanged();
+    }
+
+    /**
+     * Stop listening for the power save mode and thermal status.
+     */
+    private void unregisterQualityListeners() {
+        removeCallbacks(mQualityRunnable);
+        PowerStatus.removeListener(mPowerStatusListener);
+    }
+
+    /**
+     * Apply the level chosen by the governor, or full quality without one.
+     */
+    private void updateQualityLevel() {
+        setQualityLevel(mQualityGovernor != null ? mQualityGovernor.getLevel() : QUALITY_FULL);
+    }
+
+    /**
+     * Step to a quality level. The frame rate limit and pixel snapping are applied as the scroll is
+     * redrawn. Effects are removed from the text paint and restored later. The static level stops
+     * the scroll and draws the text ellipsized instead.
+     *
+     * @param level Quality level.
+     */
+    private void setQualityLevel(int level) {
+        int previousLevel = mQualityLevel;
+        if (level == previousLevel) return;
+
+        mQualityLevel = level;
+
+        if (level >= QUALITY_NO_EFFECTS && previousLevel < QUALITY_NO_EFFECTS) {
+            mEffectsPaint = new Paint();
+            copyEffects(mTextPaint, mEffectsPaint);
+            removeEffects(mTextPaint);
+            mStripCache.invalidate();
+        } else if (level < QUALITY_NO_EFFECTS && previousLevel >= QUALITY_NO_EFFECTS) {
+            // Other changes made meanwhile are kept
+            copyEffects(mEffectsPaint, mTextPaint);
+            mEffectsPaint = null;
+            mStripCache.invalidate();
+        }
+
+        if (level == QUALITY_STATIC) {
+            stopTicker();
+
+            if (mTextAnimator != null) {
+                mTextAnimator.cancel();
+            }
+
+            updateStaticText();
+
+            if (mQualityGovernor.isJankStatic()) {
+                postDelayed(mQualityRunnable, RECOVERY_DELAY);
+            }
+        } else if (previousLevel == QUALITY_STATIC) {
+            removeCallbacks(mQualityRunnable);
+            mScrollDirty = true;
+            requestLayout();
+        }
+
+        invalidate();
+
+        if (mOnQualityChangeListener != null) {
+            mOnQualityChangeListener.onQualityChanged(this, level);
+        }
+    }
+
+    /**
+     * Remove the shadow and stroke effects from a paint. Only the text fill is left. The shadow can
+     * only be read back on API 29+, so it is kept before then.
+     *
+     * @param paint Paint to change.
+     */
+    private static void removeEffects(Paint paint) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            paint.clearShadowLayer();
+        }
+
+        paint.setStyle(Paint.Style.FILL);
+        paint.setPathEffect(null);
+        paint.setMaskFilter(null);
+    }
+
+    /**
+     * Copy the shadow and stroke effects from one paint to another. Nothing else is changed and
+     * only the effects that differ are set, so this is cheap enough for every frame.
+     *
+     * @param source Paint to copy from.
+     * @param target Paint to change.
+     */
+    static void copyEffects(Paint source, Paint target) {
+        if (target.getStyle() != source.getStyle()) {
+            target.setStyle(source.getStyle());
+        }
+
+        if (target.getPathEffect() != source.getPathEffect()) {
+            target.setPathEffect(source.getPathEffect());
+        }
+
+        if (target.getMaskFilter() != source.getMaskFilter()) {
+            target.setMaskFilter(source.getMaskFilter());
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+                && (target.getShadowLayerRadius() != source.getShadowLayerRadius()
+                || target.getShadowLayerDx() != source.getShadowLayerDx()
+                || target.getShadowLayerDy() != source.getShadowLayerDy()
+                || target.getShadowLayerColor() != source.getShadowLayerColor())) {
+            target.setShadowLayer(source.getShadowLayerRadius(), source.getShadowLayerDx(),
+                    source.getShadowLayerDy(), source.getShadowLayerColor());
+        }
+    }
+
+    /**
+     * Ellipsize the text to the drawing rect for the static quality level.
+     */
+    private void updateStaticText() {
+        mStaticText = TextUtils.ellipsize(mText, new TextPaint(mTextPaint), mDrawingRect.width(),
+                TextUtils.TruncateAt.END).toString();
+        mStaticTextWidth = getTextWidth(mTextPaint, mStaticText);
+    }
+
+    /**
+     * Find the next character in the text that has an icon.
+     *
+     * @param text  Text to search.
+     * @param start Index to search from.
+     * @return Index of the placeholder, or -1 if there are none.
+     */
+    private int findIcon(CharSequence text, int start) {
+        if (mIcons.size() == 0) return -1;
+
+        for (int i = start; i < text.length(); i++) {
+            if (mIcons.get(text.charAt(i)) != null) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Cover each placeholder in the text with a span that draws its icon. The icons take part in
+     * measuring the text like any other styled text.
+     *
+     * @param text Text for the marquee. This may be null.
+     * @return Styled copy of the text, or the same text if there are no placeholders.
+     */
+    private CharSequence applyIcons(CharSequence text) {
+        int index = text != null ? findIcon(text, 0) : -1;
+        if (index < 0) return text;
+
+        SpannableString iconText = new SpannableString(text);
+
+        for (; index >= 0; index = findIcon(text, index + 1)) {
+            iconText.setSpan(new IconSpan(mIcons.get(text.charAt(index))), index, index + 1,
+                    Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+
+        return iconText;
+    }
+
+    /**
+     * Check if the scroll is advanced by the shared ticker. Grouped views always use it. Client
+     * animators and vertical lines always use an animator.
+     *
+     * @return True if ticked.
+     */
+    private boolean isTicked() {
+        return (mSharedTicker || mGroup != null) && !mTextAnimatorSet && mOrientation == ORIENTATION_HORIZONTAL;
+    }
+
+    /**
+     * Apply the text color for the current drawable state. Only a color change is redrawn.
+     */
+    private void updateTextColor() {
+        int statefulColor = mTextColor.getColorForState(getDrawableState(), mTextColor.getDefaultColor());
+
+        if (mTextPaint.getColor() != statefulColor) {
+            mTextPaint.setColor(statefulColor);
+            invalidate();
+        }
+    }
+
+    /**
+     * Start receiving ticks from the shared ticker for this thread.
+     */
+    private void startTicker() {
+        mTickerTime = 0;
+        mTickerRepeats = 0;
+        mTicking = true;
+
+        // Join the group before the next frame
+        if (mGroup != null) {
+            mScroll = mGroup.getScroll(this, System.nanoTime(), mTextMetrics.getSegmentWidth());
+            invalidate();
+        }
+
+        MarqueeTicker.getInstance().add(this);
+    }
+
+    /**
+     * Stop receiving ticks from the shared ticker.
+     */
+    private void stopTicker() {
+        if (mTicking) {
+            mTicking = false;
+
+            // Requested frames keep the ticker
+            if (!mFrameRequested) {
+                MarqueeTicker.getInstance().remove(this);
+            }
+        }
+    }
+
+    /**
+     * Move the running default animator so that it continues from the current scroll position. A
+     * client animator is left alone.
+     *
+     * @param width Width of one scrolling period.
+     */
+    private void seekTextAnimator(float width) {
+        if (isTicked() || mTextAnimatorSet || !(mTextAnimator instanceof ValueAnimator) || width <= 0) return;
+
+        ValueAnimator animator = (ValueAnimator) mTextAnimator;
+        float fraction = (-mScroll % width + width) % width / width;
+
+        beginSection("MarqueeView#seekScroll");
+        animator.setCurrentPlayTime((long) (fraction * animator.getDuration()));
+        endSection();
+    }
+
+    /**
+     * Use the text prepared by setTextAsync() if it is still the latest request. The current scroll
+     * position is kept.
+     *
+     * @param textTask Task that prepared the text.
+     * @param text     Text for the marquee.
+     * @param spanned  Styled text for the marquee. This may be null.
+     */
+    private void applyPreparedText(FutureTask<TextMetrics> textTask, String text, Spanned spanned) {
+        if (textTask != mTextTask || textTask.isCancelled()) return;
+
+        mTextTask = null;
+        mText = text;
+        mSpannedText = spanned;
+        mIconSource = null;
+        mFeedLengths.clear();
+        clearPlaylist();
+
+        try {
+            TextMetrics textMetrics = textTask.get();
+
+            // Paint may have changed meanwhile
+            if (textMetrics.isValid(mTextPaint, mText, mSpannedText, mSeparator)) {
+                mTextMetrics = textMetrics;
+                mLtrText = textMetrics.isLtrText();
+                mScrollable = textMetrics.getTextWidth() > getWidth() - getPaddingLeft() - getPaddingRight();
+                mStripCache.invalidate();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            // Measure below instead
+        }
+
+        ensureTextMetrics();
+
+        mKeepScroll = true;
+        requestLayout();
+    }
+
+    /**
+     * Drop the oldest messages once the feed is longer than allowed. Only messages that have already
+     * scrolled past are dropped, and never while the start of the text is wrapping into view. The
+     * scroll is moved back by the dropped width so nothing on screen changes.
+     */
+    private void trimFeed() {
+        if (mMaxFeedLength == 0 || !mScrollable) return;
+
+        float width = mTextMetrics.getSegmentWidth();
+        float position = -(mScroll + (mLtrText ? mOffset : -mOffset)) % width;
+        position = position < 0 ? position + width : position;
+
+        if (position + mAvailableWidth > width) return;
+
+        int count = 0;
+        float advance = 0;
+
+        while (mText.length() - count > mMaxFeedLength && mFeedLengths.size() > 1) {
+            int next = count + mFeedLengths.peekFirst() + mSeparator.length();
+
+            if (mTextMetrics.getAdvance(next) > position) break;
+
+            mFeedLengths.removeFirst();
+            count = next;
+            advance = mTextMetrics.getAdvance(next);
+        }
+
+        if (count == 0) return;
+
+        mText = mText.substring(count);
+        mTextMetrics.removeStart(mText, count);
+        mScroll += advance;
+    }
+
+    /**
+     * Count a finished period of the playlist message and move on to the next message after its
+     * last repeat. The scroll continues into the next message.
+     */
+    private void onScrollRepeat() {
+        int count = mPlaylist.getCount();
+
+        if (count > 0 && ++mPlaylistRepeats >= mPlaylist.getRepeatCount(mPlaylistIndex % count)) {
+            advancePlaylist();
+        }
+    }
+
+    /**
+     * Show the next message in the playlist. Metrics measured ahead of time are used if they are
+     * ready. A layout is only requested if the size of the view might change.
+     */
+    private void advancePlaylist() {
+        int count = mPlaylist.getCount();
+        if (count == 0) return;
+
+        TextMetrics nextMetrics = getPreparedMetrics();
+        boolean wasScrollable = mScrollable;
+
+        mPlaylistIndex = (mPlaylistIndex + 1) % count;
+        mPlaylistRepeats = 0;
+        mText = mPlaylist.getMessage(mPlaylistIndex).toString();
+        mSpannedText = null;
+        mIconSource = null;
+
+        if (nextMetrics != null && mText.equals(mNextText)) {
+            mTextMetrics = nextMetrics;
+            mLtrText = nextMetrics.isLtrText();
+        } else {
+            ensureTextMetrics();
+        }
+
+        mStripCache.invalidate();
+        prefetchPlaylist();
+
+        boolean scrollable = mTextMetrics.getTextWidth() > mAvailableWidth;
+
+        // Both scroll within the same size
+        if (wasScrollable && scrollable) {
+            mScrollable = true;
+            mScrollDirty = false;
+            mKeepScroll = true;
+            updateScroll();
+        } else {
+            mScrollDirty = true;
+            mScrollable = scrollable;
+            requestLayout();
+        }
+
+        invalidate();
+    }
+
+    /**
+     * Start measuring the message after the current one on the playlist executor. Nothing is needed
+     * if the playlist only has one message.
+     */
+    private void prefetchPlaylist() {
+        cancelNextTask();
+
+        int count = mPlaylist.getCount();
+        int nextIndex = count > 0 ? (mPlaylistIndex + 1) % count : 0;
+
+        if (count < 2 || nextIndex == mPlaylistIndex) return;
+
+        final String text = mPlaylist.getMessage(nextIndex).toString();
+        final String separator = mSeparator;
+        final Paint paint = new Paint(mTextPaint);
+
+        mNextText = text;
+        mNextTask = new FutureTask<>(new Callable<TextMetrics>() {
+            @Override
+            public TextMetrics call() {
+                return TextMetrics.prepare(paint, text, null, separator);
+            }
+        });
+
+        mPlaylistExecutor.execute(mNextTask);
+    }
+
+    /**
+     * Get the metrics for the next message if it is due to scroll into view. This is only during
+     * the last repeat of the current message, once the metrics are ready and still valid and when
+     * both messages have the same direction.
+     *
+     * @return Metrics for the next message or null.
+     */
+    @Nullable
+    private TextMetrics getNextMetrics() {
+        if (mPlaylist == null || mNextTask == null) return null;
+
+        int count = mPlaylist.getCount();
+
+        if (count == 0 || mPlaylistRepeats + 1 < mPlaylist.getRepeatCount(mPlaylistIndex % count)) {
+            return null;
+        }
+
+        TextMetrics nextMetrics = getPreparedMetrics();
+        return nextMetrics != null && nextMetrics.isLtrText() == mLtrText ? nextMetrics : null;
+    }
+
+    /**
+     * Get the metrics measured ahead of time for the next message in the playlist if they are ready
+     * and still valid.
+     *
+     * @return Metrics for the next message or null.
+     */
+    @Nullable
+    private TextMetrics getPreparedMetrics() {
+        if (mNextTask == null) return null;
+
+        if (mNextMetrics == null && mNextTask.isDone() && !mNextTask.isCancelled()) {
+            try {
+                mNextMetrics = mNextTask.get();
+            } catch (InterruptedException | ExecutionException e) {
+                cancelNextTask();
+                return null;
+            }
+        }
+
+        return mNextMetrics != null && mNextMetrics.isValid(mTextPaint, mNextText, mSeparator) ? mNextMetrics : null;
+    }
+
+    /**
+     * Show a message that fits for as long as it would take to scroll across the view, once for
+     * each repeat.
+     */
+    private void schedulePlaylist() {
+        removeCallbacks(mPlaylistRunnable);
+
+        if (mPlaylist == null || mPlaylist.getCount() < 2 || mScrollSpeed == 0 || mAvailableWidth <= 0) {
+            return;
+        }
+
+        int repeatCount = mPlaylist.getRepeatCount(mPlaylistIndex % mPlaylist.getCount());
+        postDelayed(mPlaylistRunnable, (long) getScrollDuration(mAvailableWidth) * repeatCount);
+    }
+
+    /**
+     * Stop the playlist. The current text stays.
+     */
+    private void clearPlaylist() {
+        if (mPlaylist == null) return;
+
+        mPlaylist = null;
+        mPlaylistExecutor = null;
+        removeCallbacks(mPlaylistRunnable);
+        cancelNextTask();
+    }
+
+    /**
+     * Cancel the next playlist message still being measured.
+     */
+    private void cancelNextTask() {
+        if (mNextTask != null) {
+            mNextTask.cancel(false);
+            mNextTask = null;
+        }
+
+        mNextText = null;
+        mNextMetrics = null;
+    }
+
+    /**
+     * Continue the scroll from the given position. It is applied now if the view has been laid out
+     * for the current text, otherwise at the next layout. A stopped scroll is started again if it
+     * starts automatically.
+     *
+     * @param scroll Scroll position to continue from.
+     */
+    private void restoreScroll(float scroll) {
+        mScroll = scroll;
+        mKeepScroll = true;
+
+        if (mScrollDirty || !mScrollable) return;
+
+        if (mAutoStart && !isScrollStarted()) {
+            startScroll();
+        }
+
+        if (isScrollStarted()) {
+            seekTextAnimator(getPeriod());
+        }
+
+        mKeepScroll = false;
+        invalidate();
+    }
+
+    /**
+     * Remember the scroll position for the bound key so that it can continue when bound again.
+     */
+    private void saveScrollPosition() {
+        if (mPositions == null) return;
+
+        if (mScrollable) {
+            mPositions.put(mPositionKey, mScroll);
+        } else {
+            mPositions.remove(mPositionKey);
+        }
+    }
+
+    /**
+     * Cancel any text still being prepared by setTextAsync().
+     */
+    private void cancelTextTask() {
+        if (mTextTask != null) {
+            mTextTask.cancel(false);
+            mTextTask = null;
+        }
+    }
+
+    /**
+     * Measure the text again if the cached metrics are stale. Changes made directly to the paint
+     * returned by {@link #getTextPaint()} are also picked up here.
+     *
+     * @return True if the metrics were updated.
+     */
+    private boolean ensureTextMetrics() {
+        if (mOrientation == ORIENTATION_VERTICAL) {
+            return ensureLineSlots();
+        }
+
+        if (mTextMetrics.isValid(mTextPaint, mText, mSpannedText, mSeparator)) return false;
+
+        if (mFrameStats != null) {
+            mFrameStats.addCacheRebuild();
+        }
+
+        beginSection("MarqueeView#measureText");
+
+        if (mSpannedText != null) {
+            mTextMetrics.measure(mTextPaint, mSpannedText, mSeparator);
+        } else {
+            mTextMetrics.measure(mTextPaint, mText, mSeparator);
+        }
+
+        endSection();
+
+        mStripCache.invalidate();
+        mScrollDirty = true;
+        mLtrText = mTextMetrics.isLtrText();
+        mScrollable = mTextMetrics.getTextWidth() > getWidth() - getPaddingLeft() - getPaddingRight();
+
+        return true;
+    }
+
+    /**
+     * Measure the first lines of the text again if it or the paint has changed. The lines start over
+     * from the first one.
+     *
+     * @return True if measured.
+     */
+    private boolean ensureLineSlots() {
+        if (mLineSlots.isValid(mTextPaint, mText)) return false;
+
+        beginSection("MarqueeView#measureLines");
+        mLineSlots.setText(mTextPaint, mText);
+        endSection();
+
+        if (mFrameStats != null) {
+            mFrameStats.addCacheRebuild();
+        }
+
+        mLineBase = 0;
+        mScrollDirty = true;
+        mLtrText = mLineSlots.getMetrics(0).isLtrText();
+        mScrollable = mLineSlots.getLineCount() > 1;
+
+        return true;
+    }
+
+    /**
+     * Begin a system trace section if tracing has been enabled. Each one must be ended by the same
+     * method.
+     *
+     * @param sectionName Name of the section.
+     */
+    private static void beginSection(String sectionName) {
+        if (sTraceEnabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(sectionName);
+        }
+    }
+
+    /**
+     * End the last system trace section if tracing has been enabled.
+     */
+    private static void endSection() {
+        if (sTraceEnabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Utility method to find the pixel resolution of a density pixel value.
+     *
+     * @param context Context given for the metrics. This determines the resources and theme.
+     * @param dp      Density pixels to convert.
+     * @return The pixel resolution.
+     */
+    static int dpToPixels(Context context, @Dimension float dp) {
+        return (int) (dp * context.getResources().getDisplayMetrics().density + 0.5);
+    }
+
+    /**
+     * Utility method to find the density pixel value of a pixel resolution.
+     *
+     * @param context Context given for the metrics. This determines the resources and theme.
+     * @param px      Pixel resolution to convert.
+     * @return The density pixels.
+     */
+    @Dimension
+    private static float pixelsToDp(Context context, int px) {
+        return px / context.getResources().getDisplayMetrics().density;
+    }
+
+    /**
+     * Utility method to create the default text colors from the theme. Disabled text uses the
+     * highlight color.
+     *
+     * @param context Context given for the view. This determines the resources and theme.
+     * @return Text color state list.
+     */
+    @NonNull
+    static ColorStateList getDefaultTextColor(Context context) {
+        int[][] states = new int[][]{new int[]{-android.R.attr.state_enabled}, new int[]{}};
+        int[] colors = new int[]{getAttrColor(context, TEXT_COLOR_DISABLED), getAttrColor(context, TEXT_COLOR)};
+
+        return new ColorStateList(states, colors);
+    }
+
+    /**
+     * Utility method to create the paint the text is drawn with.
+     *
+     * @param textSize Text size in pixels.
+     * @return Paint object.
+     */
+    @NonNull
+    static Paint createTextPaint(float textSize) {
+        Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        textPaint.setStyle(Paint.Style.FILL);
+        textPaint.setTextSize(textSize);
+
+        return textPaint;
+    }
+
+    /**
+     * Utility method to find a color as defined in the attribute of a theme.
+     *
+     * @param context   Context given for the attribute. This determines the resources and theme.
+     * @param attrResId The color resource.
+     * @return An ARGB color integer.
+     */
+    @ColorInt
+    static int getAttrColor(Context context, @AttrRes int attrResId) {
+        TypedArray typedArray = context.getTheme().obtainStyledAttributes(new int[]{attrResId});
+        int color = typedArray.getColor(0, 0);
+        typedArray.recycle();
+
+        return color;
+    }
+
+    /**
+     * Find the area the text is drawn in for a view. This applies the padding for the layout
+     * direction and the gravity.
+     *
+     * @param view    View the text is drawn in.
+     * @param gravity Gravity applied within the view.
+     * @param metrics Metrics for the text.
+     * @param outRect Rect to receive the area.
+     */
+    static void findDrawingRect(View view, int gravity, TextMetrics metrics, Rect outRect) {
+        int paddingStart = view.getPaddingLeft();
+        int paddingEnd = view.getPaddingRight();
+
+        // Use RTL if available
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            if (isLtrLayout(view)) {
+                paddingStart = view.getPaddingStart();
+                paddingEnd = view.getPaddingEnd();
+            } else {
+                paddingStart = view.getPaddingEnd();
+                paddingEnd = view.getPaddingStart();
+            }
+        }
+
+        // Similar to getDrawingRect()
+        outRect.set(paddingStart, view.getPaddingTop(),
+                view.getWidth() - paddingEnd, view.getHeight() - view.getPaddingBottom());
+
+        int minWidth = (int) Math.min(metrics.getTextWidth(), outRect.width());
+        int fontHeight = (int) metrics.getFontHeight();
+
+        // Apply the view gravity
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            Gravity.apply(gravity, minWidth, fontHeight, outRect, outRect, view.getLayoutDirection());
+        } else {
+            Gravity.apply(gravity, minWidth, fontHeight, outRect, outRect);
+        }
+    }
+
+    /**
+     * Draw one scrolling period of the text. Only the characters within the drawing rect are drawn
+     * when the text has a single direction. This is safe to call from any thread that owns the
+     * canvas and paint.
+     *
+     * @param canvas      Canvas to draw on.
+     * @param paint       Paint for the text.
+     * @param text        Text to draw.
+     * @param metrics     Metrics for the text.
+     * @param drawingRect Area the text is drawn in.
+     * @param ltrText     True if the text is LTR.
+     * @param x           Left position of the period within the drawing rect.
+     * @param baseline    Baseline of the text.
+     */
+    static void drawSegment(Canvas canvas, Paint paint, String text, TextMetrics metrics, Rect drawingRect,
+                            boolean ltrText, float x, float baseline) {
+        int count = text.length();
+        float left = x + drawingRect.left;
+        float visibleWidth = drawingRect.width();
+
+        // Separator follows the text in reading order
+        float separatorLeft = ltrText ? left + metrics.getTextWidth() : left;
+
+        if (separatorLeft < drawingRect.right && separatorLeft + metrics.getSeparatorWidth() > drawingRect.left) {
+            metrics.drawSeparator(canvas, paint, separatorLeft, baseline);
+        }
+
+        // Mixed or styled text cannot be split
+        if (!metrics.isUnidirectional() || (!ltrText && Build.VERSION.SDK_INT < Build.VERSION_CODES.M)) {
+            float dx = ltrText ? 0 : metrics.getSegmentWidth() - metrics.getTextWidth();
+            metrics.draw(canvas, paint, left + dx, baseline);
+            return;
+        }
+
+        // Distance from the start of the text
+        float distance = ltrText ? -x : x + metrics.getSegmentWidth() - visibleWidth;
+        int start = metrics.getStartIndex(distance);
+        int end = metrics.getEndIndex(distance + visibleWidth);
+
+        if (start >= end) return;
+
+        // Keep the shaping context
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            float dx = ltrText ? metrics.getAdvance(start)
+                    : metrics.getSegmentWidth() - metrics.getAdvance(end);
+            canvas.drawTextRun(text, start, end, 0, count, left + dx, baseline, !ltrText, paint);
+        } else {
+            canvas.drawText(text, start, end, left + metrics.getAdvance(start), baseline, paint);
+        }
+    }
+
+    /**
+     * A standardized answer to the question "what is the text width?" This may not be an exact
+     * measurement of the text content. Widths are shared through the measure cache.
+     *
+     * @param paint Paint object
+     * @param text  Text to measure.
+     * @return Text width in pixels.
+     * @see Paint#getTextBounds(String, int, int, Rect)
+     * @see TextMeasureCache
+     */
+    protected static float getTextWidth(@NonNull Paint paint, String text) {
+        return TextMeasureCache.getTextWidth(paint, text);
+    }
+
+    /**
+     * A standardized answer to the question "what is the text height?" This may not be an exact
+     * measurement of the text content.
+     *
+     * @param paint Paint object.
+     * @return Text height in pixels.
+     * @see Paint#getTextBounds(String, int, int, Rect)
+     */
+    protected static float getTextHeight(@NonNull Paint paint) {
+        return paint.getTextSize();
+    }
+
+    /**
+     * Get the total font height. This is more than the height of the current text content and only
+     * used to determine the measured view.
+     *
+     * @param paint Paint object.
+     * @return Font height in pixels.
+     */
+    protected static float getFontHeight(Paint paint) {
+        Paint.FontMetrics fontMetrics = paint.getFontMetrics();
+        return fontMetrics.bottom - fontMetrics.top;
+    }
+
+    /**
+     * Check if the layout direction for the given view or configuration is left-to-right.
+     *
+     * @param view View to check.
+     * @return True if likely LTR.
+     */
+    protected static boolean isLtrLayout(View view) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            if (view.isLayoutDirectionResolved()) {
+                return view.getLayoutDirection() == LAYOUT_DIRECTION_LTR;
+            }
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            return view.getResources().getConfiguration().getLayoutDirection() == LAYOUT_DIRECTION_LTR;
+        }
+
+        return true;
+    }
+
+    /**
+     * Check if the base direction of the given text has a strong left-to-right language bias. The
+     * result is shared through the measure cache.
+     *
+     * @param text Sample text paragraph.
+     * @return True if likely LTR.
+     * @see TextMeasureCache
+     */
+    protected static boolean isLtrText(@NonNull String text) {
+        return TextMeasureCache.isLtrText(text);
+    }
+
+    /**
+     * Find the base direction of the given text without the measure cache.
+     *
+     * @param text Sample text paragraph.
+     * @return True if likely LTR.
+     */
+    static boolean findLtrText(@NonNull String text) {
+        Bidi bidi = new Bidi(text, Bidi.DIRECTION_DEFAULT_LEFT_TO_RIGHT);
+        return bidi.baseIsLeftToRight();
+    }
+
+    /**
+     * Utility method to find the preferred measurements of this view for the view parent.
+     *
+     * @param defaultSize Default size of the view.
+     * @param measureSpec Constraints imposed by the parent.
+     * @return Preferred size for this view.
+     * @see View#getDefaultSize(int, int)
+     */
+    public static int getDefaultSize(int defaultSize, int measureSpec) {
+        int mode = MeasureSpec.getMode(measureSpec);
+        int size = MeasureSpec.getSize(measureSpec);
+
+        switch (mode) {
+            case MeasureSpec.EXACTLY:
+                return size;
+            case MeasureSpec.AT_MOST:
+                return Math.min(size, defaultSize);
+            case MeasureSpec.UNSPECIFIED:
+            default:
+                return defaultSize;
+        }
+    }
+
+    /**
+     * Get the marquee text. If the contents fits within the view width no marquee will occur.
+     *
+     * @return Text for the marquee
+     */
+    @NonNull
+    public String getText() {
+        return mText;
+    }
+
+    /**
+     * Set the marquee text. If the contents fits within the view width no marquee will occur.
+     *
+     * @param text Text for the marquee.
+     */
+    public void setText(@NonNull String text) {
+        // Placeholders are drawn as styled text
+        if (text != null && findIcon(text, 0) >= 0) {
+            setText((CharSequence) text);
+            return;
+        }
+
+        cancelTextTask();
+
+        mText = text != null ? text : "";
+        mSpannedText = null;
+        mIconSource = null;
+        mFeedLengths.clear();
+        clearPlaylist();
+        ensureTextMetrics();
+        requestLayout();
+    }
+
+    /**
+     * Set the marquee text with styles. Spans are laid out once into a single line and that layout
+     * is drawn while scrolling. Set the text again after changing the spans. Plain text is drawn the
+     * same as {@link #setText(String)}.
+     *
+     * @param text Text for the marquee.
+     */
+    public void setText(@NonNull CharSequence text) {
+        CharSequence iconText = applyIcons(text);
+
+        if (!(iconText instanceof Spanned)) {
+            setText(text != null ? text.toString() : "");
+            return;
+        }
+
+        cancelTextTask();
+
+        mText = text.toString();
+        mSpannedText = (Spanned) iconText;
+        mIconSource = iconText != text ? text : null;
+        mFeedLengths.clear();
+        clearPlaylist();
+        ensureTextMetrics();
+        requestLayout();
+    }
+
+    /**
+     * Add a message to the end of the marquee text, separated by whitespace. The scroll continues
+     * from where it is and only the new message is measured. Messages that have scrolled past are
+     * dropped once the text is longer than the max feed length.
+     *
+     * @param message Message to add.
+     * @see #setMaxFeedLength(int)
+     */
+    public void appendMessage(@NonNull CharSequence message) {
+        cancelTextTask();
+        clearPlaylist();
+
+        // Feed messages are plain
+        if (mSpannedText != null) {
+            mSpannedText = null;
+            mIconSource = null;
+            ensureTextMetrics();
+        }
+
+        String string = message.toString();
+
+        // Current text is the first message
+        if (mFeedLengths.isEmpty() && !mText.isEmpty()) {
+            mFeedLengths.add(mText.length());
+        }
+
+        if (mText.isEmpty()) {
+            mText = string;
+            mFeedLengths.add(string.length());
+            ensureTextMetrics();
+            requestLayout();
+
+            return;
+        }
+
+        String previousText = mText;
+        mText = previousText.concat(mSeparator).concat(string);
+        mFeedLengths.add(string.length());
+
+        if (mTextMetrics.isValid(mTextPaint, previousText, mSeparator)) {
+            beginSection("MarqueeView#appendText");
+            mTextMetrics.append(mTextPaint, mText, previousText.length());
+            endSection();
+        } else {
+            mTextMetrics.measure(mTextPaint, mText, mSeparator);
+            mLtrText = mTextMetrics.isLtrText();
+        }
+
+        trimFeed();
+        mStripCache.invalidate();
+        mKeepScroll = true;
+
+        // Longer text cannot change the size of a scrolling view
+        if (mScrollable) {
+            updateScroll();
+            invalidate();
+        } else {
+            mScrollDirty = true;
+            mScrollable = mTextMetrics.getTextWidth() > getWidth() - getPaddingLeft() - getPaddingRight();
+            requestLayout();
+        }
+    }
+
+    /**
+     * Set the marquee text after it has been measured on the given executor. The text is swapped in
+     * on the main thread without restarting the scroll, even if the view is detached meanwhile. A
+     * newer request cancels this one.
+     *
+     * @param text     Text for the marquee.
+     * @param executor Executor used to measure the text.
+     */
+    public void setTextAsync(@NonNull CharSequence text, @NonNull Executor executor) {
+        cancelTextTask();
+        text = applyIcons(text);
+
+        final String string = text.toString();
+        final Spanned spanned = text instanceof Spanned ? (Spanned) text : null;
+        final String separator = mSeparator;
+        final Paint paint = new Paint(mTextPaint);
+
+        mTextTask = new FutureTask<TextMetrics>(new Callable<TextMetrics>() {
+            @Override
+            public TextMetrics call() {
+                return TextMetrics.prepare(paint, string, spanned, separator);
+            }
+        }) {
+            @Override
+            protected void done() {
+                if (isCancelled()) return;
+
+                final FutureTask<TextMetrics> textTask = this;
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        applyPreparedText(textTask, string, spanned);
+                    }
+                });
+            }
+        };
+
+        executor.execute(mTextTask);
+    }
+
+    /**
+     * Bind the view to an item, such as from a RecyclerView adapter. Nothing is done if the text is
+     * unchanged, otherwise only the text is replaced and the animator and paint are kept. The scroll
+     * continues from where it was when the key was last recycled into the same store. Each owner,
+     * such as an adapter, should keep its own store.
+     *
+     * @param text        Text for the marquee.
+     * @param positionKey Stable key of the item, such as its id.
+     * @param positions   Store of the scroll positions.
+     * @see #onViewRecycled()
+     */
+    public void bind(@NonNull CharSequence text, long positionKey, @NonNull MarqueePositions positions) {
+        boolean rebound = positions != mPositions || positionKey != mPositionKey;
+
+        // Recycled without being told
+        if (rebound) {
+            saveScrollPosition();
+        }
+
+        Spanned spanned = text instanceof Spanned ? (Spanned) text : null;
+
+        // Compare with the text before icons were added
+        Spanned current = mIconSource == null ? mSpannedText
+                : mIconSource instanceof Spanned ? (Spanned) mIconSource : null;
+
+        mPositions = positions;
+        mPositionKey = positionKey;
+
+        if (spanned != current || mPlaylist != null || mTextTask != null || !mText.contentEquals(text)) {
+            setText(text);
+        }
+
+        // New items start from the beginning
+        if (rebound) {
+            restoreScroll(positions.get(positionKey));
+        }
+    }
+
+    /**
+     * Release the view from its item when it is recycled. The scroll position is kept for the key
+     * in the store and the scroll is stopped until the view is bound again.
+     *
+     * @see #bind(CharSequence, long, MarqueePositions)
+     */
+    public void onViewRecycled() {
+        saveScrollPosition();
+        cancelTextTask();
+        stopScroll();
+        removeCallbacks(mPlaylistRunnable);
+
+        mPositions = null;
+    }
+
+    /**
+     * Get the playlist the marquee rotates through. This is null unless one has been set.
+     *
+     * @return Playlist for the marquee.
+     */
+    @Nullable
+    public MarqueePlaylist getPlaylist() {
+        return mPlaylist;
+    }
+
+    /**
+     * Set a playlist for the marquee to rotate through. Each message follows the previous one in
+     * the same scroll and is measured ahead of time on the given executor. Messages that fit are
+     * shown for as long as it would take to scroll across the view. Setting the text ends the
+     * playlist. This only applies to the default animator or shared ticker.
+     *
+     * @param playlist Playlist for the marquee.
+     * @param executor Executor used to measure the next message.
+     */
+    public void setPlaylist(@Nullable MarqueePlaylist playlist, @NonNull Executor executor) {
+        cancelTextTask();
+        clearPlaylist();
+
+        if (playlist == null || playlist.getCount() == 0) return;
+
+        mPlaylist = playlist;
+        mPlaylistExecutor = executor;
+        mPlaylistIndex = 0;
+        mPlaylistRepeats = 0;
+        mText = playlist.getMessage(0).toString();
+        mSpannedText = null;
+        mIconSource = null;
+        mFeedLengths.clear();
+
+        ensureTextMetrics();
+        prefetchPlaylist();
         requestLayout();
     }
 
+    /**
+     * Get the separator that follows the text in each scrolling period. It is also placed between
+     * appended and playlist messages.
+     *
+     * @return Separator text.
+     */
+    @NonNull
+    public String getSeparator() {
+        return mSeparator;
+    }
+
+    /**
+     * Set the separator that follows the text in each scrolling period. It is also placed between
+     * appended and playlist messages.
+     *
+     * @param separator Separator text.
+     */
+    public void setSeparator(@NonNull String separator) {
+        mSeparator = separator != null ? separator : SEPARATOR;
+        mFeedLengths.clear();
+
+        if (mPlaylist != null) {
+            prefetchPlaylist();
+        }
+
+        ensureTextMetrics();
+        requestLayout();
+    }
+
+    /**
+     * Get the icon drawn in place of a character.
+     *
+     * @param placeholder Placeholder character.
+     * @return Icon for the character. This may be null.
+     */
+    @Nullable
+    public Drawable getIcon(char placeholder) {
+        return mIcons.get(placeholder);
+    }
+
+    /**
+     * Draw an icon in place of a character in the text. Icons are as tall as the text size and are
+     * rasterized once into an atlas shared by every marquee, then drawn from it while scrolling.
+     * Their widths are measured along with the text. The current text is set again to apply the
+     * change. Feed messages and playlists are drawn without icons.
+     *
+     * <p>Text with an icon is styled text, so it is drawn whole from its layout each frame instead of
+     * only the glyphs in view, as plain text is. Use CACHE_STRIP to draw it from a cached strip.</p>
+     *
+     * @param placeholder Placeholder character, such as one from a private use area.
+     * @param icon        Icon for the character, or null to draw the character itself.
+     */
+    public void setIcon(char placeholder, @Nullable Drawable icon) {
+        if (icon != null) {
+            mIcons.put(placeholder, icon);
+        } else {
+            mIcons.remove(placeholder);
+        }
+
+        // Feed and playlist text is plain
+        if (mPlaylist == null && mFeedLengths.isEmpty()) {
+            setText(mIconSource != null ? mIconSource : mSpannedText != null ? mSpannedText : mText);
+        }
+    }
+
+    /**
+     * Get the marquee text color. The default and disabled states are used for the paint color.
+     *
+     * @return ColorStateList color.
+     */
+    @NonNull
+    public ColorStateList getTextColor() {
+        return mTextColor;
+    }
+
+    /**
+     * Set the marquee text color. The default and disabled states are used for the paint color.
+     *
+     * @param textColor ColorStateList color.
+     */
+    public void setTextColor(@NonNull ColorStateList textColor) {
+        mTextColor = textColor;
+        updateTextColor();
+    }
+
     /**
      * Get the marquee text size. This gets the equivalent property in the text paint object.
      *
@@ -520,6 +2739,7 @@ public class MarqueeView extends View implements ValueAnimator.AnimatorUpdateLis
      */
     public void setTextSize(float textSize) {
         mTextPaint.setTextSize(textSize);
+        ensureTextMetrics();
         requestLayout();
     }
 
@@ -542,6 +2762,15 @@ public class MarqueeView extends View implements ValueAnimator.AnimatorUpdateLis
      */
     public void setTextPaint(@NonNull Paint textPaint) {
         mTextPaint = textPaint;
+
+        // Effects return with the quality
+        if (mEffectsPaint != null) {
+            copyEffects(textPaint, mEffectsPaint);
+            removeEffects(mTextPaint);
+        }
+
+        mStripCache.invalidate();
+        ensureTextMetrics();
         requestLayout();
     }
 
@@ -563,7 +2792,6 @@ public class MarqueeView extends View implements ValueAnimator.AnimatorUpdateLis
     public void setRepeatCount(int repeatCount) {
         if (mTextAnimator instanceof ValueAnimator) {
             ((ValueAnimator) mTextAnimator).setRepeatCount(repeatCount);
-            requestLayout();
         }
     }
 
@@ -603,8 +2831,17 @@ public class MarqueeView extends View implements ValueAnimator.AnimatorUpdateLis
      * @param scrollSpeed Scroll speed for the animator.
      */
     public void setScrollSpeed(float scrollSpeed) {
-        mScrollSpeed = mScrollSpeed > 0 ? scrollSpeed : 0;
-        requestLayout();
+        mScrollSpeed = scrollSpeed > 0 ? scrollSpeed : 0;
+
+        // Retime from the current position
+        if (mScrollable && !mTextAnimatorSet) {
+            float segmentWidth = getPeriod();
+            mTextAnimator.setDuration(getScrollDuration(segmentWidth));
+
+            if (mTextAnimator.isStarted()) {
+                seekTextAnimator(segmentWidth);
+            }
+        }
     }
 
     /**
@@ -631,6 +2868,9 @@ public class MarqueeView extends View implements ValueAnimator.AnimatorUpdateLis
 
         mTextAnimator = textAnimator;
         mTextAnimatorSet = true;
+        mScrollDirty = true;
+
+        stopTicker();
 
         if (mTextAnimator instanceof ValueAnimator) {
             ((ValueAnimator) mTextAnimator).addUpdateListener(this);
@@ -666,7 +2906,10 @@ public class MarqueeView extends View implements ValueAnimator.AnimatorUpdateLis
      */
     public void setAutoStart(boolean autoStart) {
         mAutoStart = autoStart;
-        requestLayout();
+
+        if (mAutoStart && mScrollable && !isScrollStarted()) {
+            startScroll();
+        }
     }
 
     /**
@@ -685,6 +2928,500 @@ public class MarqueeView extends View implements ValueAnimator.AnimatorUpdateLis
      */
     public void setGravity(int gravity) {
         mGravity = gravity;
+
+        updateDrawingRect();
+        invalidate();
+    }
+
+    /**
+     * Get the cache mode used for the scrolling text. A cached strip is rendered once and then only
+     * translated, which is cheaper for heavy paints but uses more memory.
+     *
+     * @return Cache mode of the view.
+     * @see #CACHE_NONE
+     * @see #CACHE_STRIP
+     */
+    public int getCacheMode() {
+        return mCacheMode;
+    }
+
+    /**
+     * Set the cache mode used for the scrolling text. A cached strip is rendered once and then only
+     * translated, which is cheaper for heavy paints but uses more memory.
+     *
+     * @param cacheMode Cache mode of the view.
+     * @see #CACHE_NONE
+     * @see #CACHE_STRIP
+     */
+    public void setCacheMode(int cacheMode) {
+        mCacheMode = cacheMode;
+
+        if (mCacheMode == CACHE_NONE && mRenderMode == RENDER_NORMAL) {
+            mStripCache.release();
+        }
+
+        invalidate();
+    }
+
+    /**
+     * Get the render mode used while scrolling. When translating, the text is recorded once and
+     * only moved on hardware canvases. Before API 29 the cached strip is used instead.
+     *
+     * @return Render mode of the view.
+     * @see #RENDER_NORMAL
+     * @see #RENDER_TRANSLATE
+     */
+    public int getRenderMode() {
+        return mRenderMode;
+    }
+
+    /**
+     * Set the render mode used while scrolling. When translating, the text is recorded once and
+     * only moved on hardware canvases. Scrolling then only updates the translation of the recorded
+     * node, and onDraw() is skipped until something else changes. Before API 29 the cached strip is
+     * used instead.
+     *
+     * @param renderMode Render mode of the view.
+     * @see #RENDER_NORMAL
+     * @see #RENDER_TRANSLATE
+     */
+    public void setRenderMode(int renderMode) {
+        mRenderMode = renderMode;
+
+        if (mCacheMode == CACHE_NONE && mRenderMode == RENDER_NORMAL) {
+            mStripCache.release();
+        }
+
+        invalidate();
+    }
+
+    /**
+     * Get the direction the text moves in.
+     *
+     * @return Orientation of the view.
+     * @see #ORIENTATION_HORIZONTAL
+     * @see #ORIENTATION_VERTICAL
+     */
+    public int getOrientation() {
+        return mOrientation;
+    }
+
+    /**
+     * Set the direction the text moves in. When vertical, each line of the text is held and then
+     * slides up to be replaced by the next, repeating after the last one. Only the visible lines and
+     * the next one are measured, so a frame that brings in a new line allocates. Lines are plain text
+     * and the shared ticker, strip cache, fading edges, feed and playlist are not used.
+     *
+     * @param orientation Orientation of the view.
+     * @see #ORIENTATION_HORIZONTAL
+     * @see #ORIENTATION_VERTICAL
+     */
+    public void setOrientation(int orientation) {
+        stopScroll();
+
+        mOrientation = orientation;
+        mLineSlots.clear();
+        mScrollDirty = true;
+        requestLayout();
+    }
+
+    /**
+     * Get if the shared ticker is used instead of the default animator. This has no effect once a
+     * client animator has been set.
+     *
+     * @return True if the shared ticker is used.
+     * @see MarqueeTicker
+     */
+    public boolean isSharedTicker() {
+        return mSharedTicker;
+    }
+
+    /**
+     * Set if the shared ticker is used instead of the default animator. This has no effect once a
+     * client animator has been set.
+     *
+     * @param sharedTicker True to use the shared ticker.
+     * @see MarqueeTicker
+     */
+    public void setSharedTicker(boolean sharedTicker) {
+        stopScroll();
+
+        mSharedTicker = sharedTicker;
+        mScrollDirty = true;
         requestLayout();
     }
+
+    /**
+     * Get if the scroll pauses while the view cannot be seen. This includes hidden parents, hidden
+     * windows and being scrolled off-screen.
+     *
+     * @return True if paused automatically.
+     */
+    public boolean isAutoPause() {
+        return mAutoPause;
+    }
+
+    /**
+     * Set if the scroll pauses while the view cannot be seen. This includes hidden parents, hidden
+     * windows and being scrolled off-screen.
+     *
+     * @param autoPause True to pause automatically.
+     */
+    public void setAutoPause(boolean autoPause) {
+        mAutoPause = autoPause;
+        updateAutoPause();
+    }
+
+    /**
+     * Get if the scroll also pauses while the window does not have focus. This only applies while
+     * paused automatically.
+     *
+     * @return True if paused on focus loss.
+     */
+    public boolean isPauseOnFocusLoss() {
+        return mPauseOnFocusLoss;
+    }
+
+    /**
+     * Set if the scroll also pauses while the window does not have focus, such as behind a dialog.
+     * This only applies while paused automatically. It is off by default, since a window can be
+     * seen without focus in multi-window mode, on a Presentation display or as an overlay.
+     *
+     * @param pauseOnFocusLoss True to pause while unfocused.
+     */
+    public void setPauseOnFocusLoss(boolean pauseOnFocusLoss) {
+        mPauseOnFocusLoss = pauseOnFocusLoss;
+        updateAutoPause();
+    }
+
+    /**
+     * Check if the scroll is currently paused, either by the client or because the view cannot be
+     * seen.
+     *
+     * @return True if paused.
+     */
+    public boolean isPaused() {
+        return mPausedFlags != 0;
+    }
+
+    /**
+     * Set a listener to be notified when the scroll is paused or resumed. This may be null.
+     *
+     * @param listener Listener for the pause state.
+     */
+    public void setOnPauseChangeListener(@Nullable OnPauseChangeListener listener) {
+        mOnPauseChangeListener = listener;
+    }
+
+    /**
+     * Get the limit for redraws per second caused by the scroll. Zero means no limit beyond the
+     * display refresh rate.
+     *
+     * @return Maximum frame rate.
+     */
+    public int getMaxFrameRate() {
+        return mMaxFrameRate;
+    }
+
+    /**
+     * Set the limit for redraws per second caused by the scroll. Zero means no limit beyond the
+     * display refresh rate.
+     *
+     * @param maxFrameRate Maximum frame rate.
+     */
+    public void setMaxFrameRate(int maxFrameRate) {
+        mMaxFrameRate = maxFrameRate > 0 ? maxFrameRate : 0;
+    }
+
+    /**
+     * Get if the scroll is snapped to whole pixels. The view is then only redrawn when the text has
+     * moved by at least one pixel.
+     *
+     * @return True if snapped.
+     */
+    public boolean isPixelSnap() {
+        return mPixelSnap;
+    }
+
+    /**
+     * Set if the scroll is snapped to whole pixels. The view is then only redrawn when the text has
+     * moved by at least one pixel.
+     *
+     * @param pixelSnap True to snap.
+     */
+    public void setPixelSnap(boolean pixelSnap) {
+        mPixelSnap = pixelSnap;
+        invalidate();
+    }
+
+    /**
+     * Get the number of frames actually drawn per second. This is measured over the last second of
+     * drawing and is zero until then.
+     *
+     * @return Drawn frame rate.
+     */
+    public float getDrawnFrameRate() {
+        return mDrawnFrameRate;
+    }
+
+    /**
+     * Get the number of characters kept by appendMessage(). Older messages are dropped after they
+     * have scrolled past. Zero means no limit.
+     *
+     * @return Maximum feed length.
+     */
+    public int getMaxFeedLength() {
+        return mMaxFeedLength;
+    }
+
+    /**
+     * Set the number of characters kept by appendMessage(). Older messages are dropped after they
+     * have scrolled past. Zero means no limit.
+     *
+     * @param maxFeedLength Maximum feed length.
+     */
+    public void setMaxFeedLength(int maxFeedLength) {
+        mMaxFeedLength = maxFeedLength > 0 ? maxFeedLength : 0;
+    }
+
+    /**
+     * Get the length of the faded edges. Zero means the edges are not faded.
+     *
+     * @return Fade length in pixels.
+     */
+    public int getFadeLength() {
+        return mFadeLength;
+    }
+
+    /**
+     * Set the length of the faded edges. Scrolling text is faded toward both edges with a gradient
+     * shader instead of an offscreen layer. Text that fits is not faded and the strip cache is not
+     * used while fading. Styled text is not faded.
+     *
+     * @param fadeLength Fade length in pixels.
+     */
+    public void setFadeLength(int fadeLength) {
+        mFadeLength = fadeLength > 0 ? fadeLength : 0;
+        invalidate();
+    }
+
+    /**
+     * Set a listener to receive the frame statistics of the view. They are collected over a window
+     * and reported after the first frame drawn past its end. Nothing is collected without a
+     * listener.
+     *
+     * @param listener Listener for the statistics. This may be null.
+     * @param window   Length of the window in milliseconds.
+     * @see FrameStats
+     */
+    public void setFrameStatsListener(@Nullable OnFrameStatsListener listener, int window) {
+        mOnFrameStatsListener = listener;
+        mFrameStatsWindow = Math.max(window, 1);
+
+        if (listener == null) {
+            mFrameStats = null;
+        } else if (mFrameStats == null) {
+            mFrameStats = new FrameStats();
+            mFrameStats.reset(AnimationUtils.currentAnimationTimeMillis());
+        }
+    }
+
+    /**
+     * Get if the frame rate, scroll position, scrollability and cache state are painted over the
+     * view. This is only meant for debugging and allocates while drawing.
+     *
+     * @return True if painted.
+     */
+    public boolean isDebugOverlay() {
+        return mDebugOverlay;
+    }
+
+    /**
+     * Set if the frame rate, scroll position, scrollability and cache state are painted over the
+     * view. This is only meant for debugging and allocates while drawing.
+     *
+     * @param debugOverlay True to paint.
+     */
+    public void setDebugOverlay(boolean debugOverlay) {
+        mDebugOverlay = debugOverlay;
+        invalidate();
+    }
+
+    /**
+     * Get if the quality is lowered on missed frames, thermal throttling and power saving.
+     *
+     * @return True if adaptive.
+     */
+    public boolean isAdaptiveQuality() {
+        return mQualityGovernor != null;
+    }
+
+    /**
+     * Set if the quality is lowered on missed frames, thermal throttling and power saving. Each
+     * level adds to the one before: a lower frame rate, pixel snapping, no shadow or stroke effects
+     * and finally ellipsized text that does not scroll. The quality steps back up as conditions
+     * recover.
+     *
+     * @param adaptiveQuality True to adapt.
+     * @see #QUALITY_FULL
+     * @see #QUALITY_REDUCED_RATE
+     * @see #QUALITY_PIXEL_SNAP
+     * @see #QUALITY_NO_EFFECTS
+     * @see #QUALITY_STATIC
+     */
+    public void setAdaptiveQuality(boolean adaptiveQuality) {
+        if (adaptiveQuality == (mQualityGovernor != null)) return;
+
+        if (adaptiveQuality) {
+            mQualityGovernor = new QualityGovernor();
+
+            mPowerStatusListener = new PowerStatus.Listener() {
+                @Override
+                public void onPowerStatusChanged() {
+                    mQualityGovernor.setPowerSaveMode(PowerStatus.isPowerSaveMode());
+                    mQualityGovernor.setThermalStatus(PowerStatus.getThermalStatus());
+                    updateQualityLevel();
+                }
+            };
+
+            if (getWindowToken() != null) {
+                registerQualityListeners();
+            }
+        } else {
+            if (getWindowToken() != null) {
+                unregisterQualityListeners();
+            }
+
+            mQualityGovernor = null;
+            mPowerStatusListener = null;
+            updateQualityLevel();
+        }
+    }
+
+    /**
+     * Get the current quality level. This is always full quality unless adaptive.
+     *
+     * @return Quality level.
+     */
+    public int getQualityLevel() {
+        return mQualityLevel;
+    }
+
+    /**
+     * Set a listener to be called when the quality level changes.
+     *
+     * @param listener Listener for the level. This may be null.
+     */
+    public void setOnQualityChangeListener(@Nullable OnQualityChangeListener listener) {
+        mOnQualityChangeListener = listener;
+    }
+
+    /**
+     * Get if system trace sections are added for measuring, layout, drawing and starting the
+     * scroll. This applies to every view.
+     *
+     * @return True if enabled.
+     */
+    public static boolean isTraceEnabled() {
+        return sTraceEnabled;
+    }
+
+    /**
+     * Set if system trace sections are added for measuring, layout, drawing and starting the
+     * scroll. This applies to every view and should be set on the main thread before profiling.
+     *
+     * @param traceEnabled True to enable.
+     */
+    public static void setTraceEnabled(boolean traceEnabled) {
+        sTraceEnabled = traceEnabled;
+    }
+
+    /**
+     * State of the view that is kept across configuration changes. Only the scroll position is
+     * saved, the text is expected to be set again.
+     */
+    static class SavedState extends BaseSavedState {
+
+        private float mScroll;
+
+        /**
+         * Constructor called by the view when saving its state.
+         *
+         * @param superState State of the parent class.
+         */
+        SavedState(Parcelable superState) {
+            super(superState);
+        }
+
+        /**
+         * Constructor called when reading the state from a parcel.
+         *
+         * @param source Parcel to read from.
+         */
+        private SavedState(Parcel source) {
+            super(source);
+            mScroll = source.readFloat();
+        }
+
+        @Override
+        public void writeToParcel(Parcel dest, int flags) {
+            super.writeToParcel(dest, flags);
+            dest.writeFloat(mScroll);
+        }
+
+        public static final Parcelable.Creator<SavedState> CREATOR = new Parcelable.Creator<SavedState>() {
+            @Override
+            public SavedState createFromParcel(Parcel source) {
+                return new SavedState(source);
+            }
+
+            @Override
+            public SavedState[] newArray(int size) {
+                return new SavedState[size];
+            }
+        };
+    }
+
+    /**
+     * Interface definition for a callback to be invoked when the scroll is paused or resumed.
+     */
+    public interface OnPauseChangeListener {
+
+        /**
+         * Called when the scroll has been paused or resumed.
+         *
+         * @param view   View that changed.
+         * @param paused True if now paused.
+         */
+        void onPauseChanged(@NonNull MarqueeView view, boolean paused);
+    }
+
+    /**
+     * Interface definition for a callback to be invoked with the frame statistics of each window.
+     */
+    public interface OnFrameStatsListener {
+
+        /**
+         * Called when a window of frame statistics has been collected. The statistics are reused
+         * for the next window once this returns.
+         *
+         * @param view  View that was drawn.
+         * @param stats Statistics for the window.
+         */
+        void onFrameStats(@NonNull MarqueeView view, @NonNull FrameStats stats);
+    }
+
+    /**
+     * Interface definition for a callback to be invoked when the quality level changes.
+     */
+    public interface OnQualityChangeListener {
+
+        /**
+         * Called when the quality level has been stepped up or down.
+         *
+         * @param view  View that changed.
+         * @param level New quality level.
+         */
+        void onQualityChanged(@NonNull MarqueeView view, int level);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2021 Christopher Zaborsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.unary.marqueeview;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Build;
+import android.os.PowerManager;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+
+/**
+ * The power save mode and thermal status of the device, shared by every adaptive marquee. One
+ * receiver and one thermal listener are registered for the process while any view is listening,
+ * and changes are passed on to each of them.
+ */
+@MainThread
+final class PowerStatus {
+
+    private static final ArrayList<Listener> sListeners = new ArrayList<>();
+
+    private static Context sContext;
+    private static PowerManager sPowerManager;
+    private static BroadcastReceiver sPowerSaveReceiver;
+    private static Object sThermalListener; // OnThermalStatusChangedListener on API 29+
+    private static boolean sPowerSaveMode;
+    private static int sThermalStatus;
+
+    /**
+     * Static methods only.
+     */
+    private PowerStatus() {
+    }
+
+    /**
+     * Start passing on changes to the listener. The system is listened to from the first one.
+     *
+     * @param context  Context of the view.
+     * @param listener Listener to add.
+     */
+    static void addListener(@NonNull Context context, @NonNull Listener listener) {
+        if (sListeners.contains(listener)) return;
+
+        sListeners.add(listener);
+
+        if (sListeners.size() == 1) {
+            register(context.getApplicationContext());
+        }
+    }
+
+    /**
+     * Stop passing on changes to the listener. The system is no longer listened to after the last
+     * one.
+     *
+     * @param listener Listener to remove.
+     */
+    static void removeListener(@NonNull Listener listener) {
+        if (sListeners.remove(listener) && sListeners.isEmpty()) {
+            unregister();
+        }
+    }
+
+    /**
+     * Check if the device is saving power. This is only current while listened to.
+     *
+     * @return True if saving power.
+     */
+    static boolean isPowerSaveMode() {
+        return sPowerSaveMode;
+    }
+
+    /**
+     * Get the thermal status of the device. This is only current while listened to.
+     *
+     * @return Thermal status from PowerManager.
+     */
+    static int getThermalStatus() {
+        return sThermalStatus;
+    }
+
+    /**
+     * Read the current values and register for changes.
+     *
+     * @param context Application context.
+     */
+    private static void register(Context context) {
+        sContext = context;
+        sPowerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        if (sPowerManager == null) return;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            sPowerSaveMode = sPowerManager.isPowerSaveMode();
+
+            if (sPowerSaveReceiver == null) {
+                sPowerSaveReceiver = new BroadcastReceiver() {
+                    @Override
+                    public void onReceive(Context context, Intent intent) {
+                        sPowerSaveMode = sPowerManager.isPowerSaveMode();
+                        notifyListeners();
+                    }
+                };
+            }
+
+            context.registerReceiver(sPowerSaveReceiver, new IntentFilter(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED));
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            sThermalStatus = sPowerManager.getCurrentThermalStatus();
+
+            if (sThermalListener == null) {
+                sThermalListener = new PowerManager.OnThermalStatusChangedListener() {
+                    @Override
+                    public void onThermalStatusChanged(int status) {
+                        sThermalStatus = status;
+                        notifyListeners();
+                    }
+                };
+            }
+
+            sPowerManager.addThermalStatusListener((PowerManager.OnThermalStatusChangedListener) sThermalListener);
+        }
+    }
+
+    /**
+     * Unregister from the system.
+     */
+    private static void unregister() {
+        if (sPowerManager == null) return;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            sContext.unregisterReceiver(sPowerSaveReceiver);
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            sPowerManager.removeThermalStatusListener((PowerManager.OnThermalStatusChangedListener) sThermalListener);
+        }
+
+        sPowerManager = null;
+        sContext = null;
+    }
+
+    /**
+     * Pass a change on to every listener. Listeners may remove themselves meanwhile.
+     */
+    private static void notifyListeners() {
+        for (int i = sListeners.size() - 1; i >= 0; i--) {
+            if (i < sListeners.size()) {
+                sListeners.get(i).onPowerStatusChanged();
+            }
+        }
+    }
+
+    /**
+     * Interface definition for a callback to be invoked when the power save mode or thermal status
+     * changes.
+     */
+    interface Listener {
+
+        /**
+         * Called after the power save mode or thermal status has changed.
+         */
+        void onPowerStatusChanged();
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2021 Christopher Zaborsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.unary.marqueeview;
+
+import android.os.PowerManager;
+
+/**
+ * Chooses the quality level of a marquee from missed frame deadlines, the thermal status and the
+ * power save mode. Missed frames move the level one step per window. The thermal status and power
+ * save mode set a level that it cannot go above until they recover.
+ *
+ * @see MarqueeView#setAdaptiveQuality(boolean)
+ */
+final class QualityGovernor {
+
+    static final int WINDOW = 2000; // ms
+    private static final float FRAME_INTERVAL = 1000 / 60f; // ms
+    private static final float MISSED_FRAME = 1.5f;
+    private static final float STEP_DOWN_RATIO = 0.1f;
+    private static final float STEP_UP_RATIO = 0.02f;
+
+    private float mFrameInterval;
+    private long mFrameTime;
+    private long mWindowStart;
+    private int mFrames;
+    private int mMissedFrames;
+    private int mJankLevel;
+    private int mThermalLevel;
+    private int mPowerSaveLevel;
+
+    /**
+     * Create a governor at full quality for a 60Hz display.
+     */
+    QualityGovernor() {
+        mFrameInterval = FRAME_INTERVAL;
+    }
+
+    /**
+     * Set the refresh rate of the display the frames are drawn on.
+     *
+     * @param refreshRate Frames per second.
+     */
+    void setRefreshRate(float refreshRate) {
+        mFrameInterval = refreshRate > 0 ? 1000 / refreshRate : FRAME_INTERVAL;
+    }
+
+    /**
+     * Count a frame of the scroll. A frame that came later than one and a half intervals after the
+     * previous one missed its deadline, along with any others in between.
+     *
+     * @param time Frame time in milliseconds.
+     * @return True if the level changed.
+     */
+    boolean onFrame(long time) {
+        if (mFrameTime == 0) {
+            mFrameTime = time;
+            mWindowStart = time;
+            return false;
+        }
+
+        float frames = (time - mFrameTime) / mFrameInterval;
+        mFrameTime = time;
+
+        // Same frame seen twice
+        if (frames < 0.5f) return false;
+
+        mFrames++;
+
+        if (frames > MISSED_FRAME) {
+            mMissedFrames += Math.round(frames) - 1;
+        }
+
+        if (time - mWindowStart < WINDOW) return false;
+
+        float ratio = (float) mMissedFrames / (mFrames + mMissedFrames);
+        int jankLevel = mJankLevel;
+
+        if (ratio > STEP_DOWN_RATIO) {
+            mJankLevel = Math.min(mJankLevel + 1, MarqueeView.QUALITY_STATIC);
+        } else if (ratio < STEP_UP_RATIO) {
+            mJankLevel = Math.max(mJankLevel - 1, MarqueeView.QUALITY_FULL);
+        }
+
+        mWindowStart = time;
+        mFrames = 0;
+        mMissedFrames = 0;
+
+        return getLevel(jankLevel) != getLevel();
+    }
+
+    /**
+     * Forget the previous frame, such as after a pause, so that the gap is not counted as missed.
+     */
+    void resetFrames() {
+        mFrameTime = 0;
+        mFrames = 0;
+        mMissedFrames = 0;
+    }
+
+    /**
+     * Try scrolling again after missed frames stopped the scroll. There are no frames to count
+     * while it is stopped.
+     */
+    void recover() {
+        mJankLevel = Math.min(mJankLevel, MarqueeView.QUALITY_NO_EFFECTS);
+        resetFrames();
+    }
+
+    /**
+     * Set the thermal status. Moderate throttling lowers the frame rate, severe throttling drops
+     * the effects and anything worse stops the scroll.
+     *
+     * @param status Thermal status from PowerManager.
+     */
+    void setThermalStatus(int status) {
+        if (status >= PowerManager.THERMAL_STATUS_CRITICAL) {
+            mThermalLevel = MarqueeView.QUALITY_STATIC;
+        } else if (status >= PowerManager.THERMAL_STATUS_SEVERE) {
+            mThermalLevel = MarqueeView.QUALITY_NO_EFFECTS;
+        } else if (status >= PowerManager.THERMAL_STATUS_MODERATE) {
+            mThermalLevel = MarqueeView.QUALITY_REDUCED_RATE;
+        } else {
+            mThermalLevel = MarqueeView.QUALITY_FULL;
+        }
+    }
+
+    /**
+     * Set the power save mode. Saving power lowers the frame rate and snaps to whole pixels.
+     *
+     * @param powerSaveMode True if saving power.
+     */
+    void setPowerSaveMode(boolean powerSaveMode) {
+        mPowerSaveLevel = powerSaveMode ? MarqueeView.QUALITY_PIXEL_SNAP : MarqueeView.QUALITY_FULL;
+    }
+
+    /**
+     * Check if missed frames alone have stopped the scroll.
+     *
+     * @return True if stopped by missed frames.
+     */
+    boolean isJankStatic() {
+        return mJankLevel == MarqueeView.QUALITY_STATIC;
+    }
+
+    /**
+     * Get the quality level for all of the conditions.
+     *
+     * @return Quality level.
+     */
+    int getLevel() {
+        return getLevel(mJankLevel);
+    }
+
+    /**
+     * Get the quality level for the conditions with the given level for missed frames.
+     *
+     * @param jankLevel Level for missed frames.
+     * @return Quality level.
+     */
+    private int getLevel(int jankLevel) {
+        return Math.max(jankLevel, Math.max(mThermalLevel, mPowerSaveLevel));
+    }
+}
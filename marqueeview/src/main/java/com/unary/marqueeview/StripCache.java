@@ -0,0 +1,363 @@
+/*
+ * Copyright 2021 Christopher Zaborsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.unary.marqueeview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.MaskFilter;
+import android.graphics.Paint;
+import android.graphics.PathEffect;
+import android.graphics.RenderNode;
+import android.graphics.Typeface;
+import android.graphics.Xfermode;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+/**
+ * An off-screen copy of one scrolling period of the marquee text. The text is rendered once and
+ * then only translated while scrolling. A RenderNode is used on hardware canvases when available,
+ * otherwise a reusable Bitmap. Both periods can also be kept in a parent node that is recorded once
+ * and then only translated.
+ */
+final class StripCache {
+
+    private Bitmap mBitmap;
+    private Canvas mBitmapCanvas;
+    private Object mRenderNode; // RenderNode on API 29+
+    private Object mScrollNode; // RenderNode on API 29+
+    private boolean mScrollValid;
+    private final Paint mBitmapPaint;
+    private boolean mValid;
+    private boolean mHardware;
+    private int mPadding;
+    private int mRenderCount;
+
+    // Paint attributes that affect rendering
+    private int mColor;
+    private int mFlags;
+    private Paint.Style mStyle;
+    private float mStrokeWidth;
+    private float mStrokeMiter;
+    private Paint.Join mStrokeJoin;
+    private Paint.Cap mStrokeCap;
+    private float mTextSize;
+    private float mTextScaleX;
+    private float mTextSkewX;
+    private Typeface mTypeface;
+    private PathEffect mPathEffect;
+    private MaskFilter mMaskFilter;
+    private ColorFilter mColorFilter;
+    private Xfermode mXfermode;
+    private float mShadowRadius;
+    private float mShadowDx;
+    private float mShadowDy;
+    private int mShadowColor;
+
+    /**
+     * Create an empty cache. Nothing is allocated until the first call to prepare().
+     */
+    StripCache() {
+        mBitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    }
+
+    /**
+     * Mark the cache as stale. It will be rendered again before it is next drawn.
+     */
+    void invalidate() {
+        mValid = false;
+        mScrollValid = false;
+    }
+
+    /**
+     * Render the text into the cache if it is stale. Some canvases cannot use the cache, such as
+     * when the strip exceeds the maximum bitmap size.
+     *
+     * @param canvas  Canvas that will draw the cache.
+     * @param paint   Paint for the text.
+     * @param ltrText True if the text is LTR. The separator is on the left of RTL text.
+     * @param width   Width of the strip. This is one scrolling period.
+     * @param metrics Metrics for the text.
+     * @return True if the cache can be drawn.
+     */
+    boolean prepare(@NonNull Canvas canvas, @NonNull Paint paint, boolean ltrText, float width,
+                    @NonNull TextMetrics metrics) {
+        boolean hardware = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && canvas.isHardwareAccelerated();
+
+        if (mValid && mHardware == hardware && isPaintValid(paint)) {
+            return true;
+        }
+
+        mPadding = (int) Math.ceil(paint.getStrokeWidth());
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            mPadding += (int) Math.ceil(paint.getShadowLayerRadius()
+                    + Math.max(Math.abs(paint.getShadowLayerDx()), Math.abs(paint.getShadowLayerDy())));
+        }
+
+        int stripWidth = (int) Math.ceil(width) + mPadding * 2;
+        int stripHeight = (int) Math.ceil(metrics.getFontHeight()) + mPadding * 2;
+
+        if (stripWidth > canvas.getMaximumBitmapWidth() || stripHeight > canvas.getMaximumBitmapHeight()) {
+            release();
+            return false;
+        }
+
+        float y = mPadding - metrics.getFontTop();
+        float x = ltrText ? 0 : width - metrics.getTextWidth();
+        float separatorX = ltrText ? metrics.getTextWidth() : 0;
+
+        Canvas stripCanvas = hardware && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+                ? beginRecording(stripWidth, stripHeight) : beginBitmap(stripWidth, stripHeight);
+
+        metrics.draw(stripCanvas, paint, x + mPadding, y);
+        metrics.drawSeparator(stripCanvas, paint, separatorX + mPadding, y);
+
+        if (hardware && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            endRecording();
+        }
+
+        mValid = true;
+        mScrollValid = false;
+        mRenderCount++;
+        mHardware = hardware;
+        savePaint(paint);
+
+        return true;
+    }
+
+    /**
+     * Check if the paint still matches the one the cache was rendered with. Every attribute that
+     * changes how the text looks is compared. This does not allocate. Shadows can only be read on
+     * API 29+, so before then a new shadow is only seen once something else changes.
+     *
+     * @param paint Paint for the text.
+     * @return True if the cache can be reused.
+     */
+    private boolean isPaintValid(Paint paint) {
+        if (mColor != paint.getColor()
+                || mFlags != paint.getFlags()
+                || mStyle != paint.getStyle()
+                || mStrokeWidth != paint.getStrokeWidth()
+                || mStrokeMiter != paint.getStrokeMiter()
+                || mStrokeJoin != paint.getStrokeJoin()
+                || mStrokeCap != paint.getStrokeCap()
+                || mTextSize != paint.getTextSize()
+                || mTextScaleX != paint.getTextScaleX()
+                || mTextSkewX != paint.getTextSkewX()
+                || mTypeface != paint.getTypeface()
+                || mPathEffect != paint.getPathEffect()
+                || mMaskFilter != paint.getMaskFilter()
+                || mColorFilter != paint.getColorFilter()
+                || mXfermode != paint.getXfermode()) {
+            return false;
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            return mShadowRadius == paint.getShadowLayerRadius()
+                    && mShadowDx == paint.getShadowLayerDx()
+                    && mShadowDy == paint.getShadowLayerDy()
+                    && mShadowColor == paint.getShadowLayerColor();
+        }
+
+        return true;
+    }
+
+    /**
+     * Keep the paint attributes the cache was rendered with.
+     *
+     * @param paint Paint for the text.
+     */
+    private void savePaint(Paint paint) {
+        mColor = paint.getColor();
+        mFlags = paint.getFlags();
+        mStyle = paint.getStyle();
+        mStrokeWidth = paint.getStrokeWidth();
+        mStrokeMiter = paint.getStrokeMiter();
+        mStrokeJoin = paint.getStrokeJoin();
+        mStrokeCap = paint.getStrokeCap();
+        mTextSize = paint.getTextSize();
+        mTextScaleX = paint.getTextScaleX();
+        mTextSkewX = paint.getTextSkewX();
+        mTypeface = paint.getTypeface();
+        mPathEffect = paint.getPathEffect();
+        mMaskFilter = paint.getMaskFilter();
+        mColorFilter = paint.getColorFilter();
+        mXfermode = paint.getXfermode();
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            mShadowRadius = paint.getShadowLayerRadius();
+            mShadowDx = paint.getShadowLayerDx();
+            mShadowDy = paint.getShadowLayerDy();
+            mShadowColor = paint.getShadowLayerColor();
+        }
+    }
+
+    /**
+     * Draw the cache at the given position. The cache must have been prepared for the canvas.
+     *
+     * @param canvas   Canvas to draw on.
+     * @param x        Left position of the strip.
+     * @param baseline Baseline of the text.
+     * @param metrics  Metrics for the text.
+     */
+    void draw(@NonNull Canvas canvas, float x, float baseline, @NonNull TextMetrics metrics) {
+        float left = x - mPadding;
+        float top = baseline + metrics.getFontTop() - mPadding;
+
+        if (mHardware && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            int saveCount = canvas.save();
+            canvas.translate(left, top);
+            canvas.drawRenderNode((RenderNode) mRenderNode);
+            canvas.restoreToCount(saveCount);
+        } else if (mBitmap != null) {
+            canvas.drawBitmap(mBitmap, left, top, mBitmapPaint);
+        }
+    }
+
+    /**
+     * Draw two periods of the cache from a single node. The node is recorded once and only its
+     * translation changes when scrolling. This is only possible with a render node.
+     *
+     * @param canvas   Canvas to draw on.
+     * @param x        Left position of the first period.
+     * @param baseline Baseline of the text.
+     * @param width    Width of one period.
+     * @param metrics  Metrics for the text.
+     * @return True if the node was drawn.
+     */
+    boolean drawTranslated(@NonNull Canvas canvas, float x, float baseline, float width, @NonNull TextMetrics metrics) {
+        if (!mHardware || Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) return false;
+
+        if (mScrollNode == null) {
+            mScrollNode = new RenderNode("MarqueeView");
+        }
+
+        RenderNode scrollNode = (RenderNode) mScrollNode;
+
+        if (!mScrollValid) {
+            RenderNode renderNode = (RenderNode) mRenderNode;
+            int scrollWidth = (int) Math.ceil(width) + renderNode.getWidth();
+
+            scrollNode.setPosition(0, 0, scrollWidth, renderNode.getHeight());
+            Canvas scrollCanvas = scrollNode.beginRecording(scrollWidth, renderNode.getHeight());
+            scrollCanvas.drawRenderNode(renderNode);
+            scrollCanvas.translate(width, 0);
+            scrollCanvas.drawRenderNode(renderNode);
+            scrollNode.endRecording();
+
+            mScrollValid = true;
+        }
+
+        scrollNode.setTranslationX(x - mPadding);
+        scrollNode.setTranslationY(baseline + metrics.getFontTop() - mPadding);
+        canvas.drawRenderNode(scrollNode);
+
+        return true;
+    }
+
+    /**
+     * Check if the cache holds the current text. The paint is only compared when it is prepared.
+     *
+     * @return True if valid.
+     */
+    boolean isValid() {
+        return mValid;
+    }
+
+    /**
+     * Get the number of times the text has been rendered into the cache.
+     *
+     * @return Count of renders.
+     */
+    int getRenderCount() {
+        return mRenderCount;
+    }
+
+    /**
+     * Release the cache memory. It will be recreated if drawn again.
+     */
+    void release() {
+        mValid = false;
+
+        if (mBitmap != null) {
+            mBitmap.recycle();
+            mBitmap = null;
+            mBitmapCanvas = null;
+        }
+
+        if (mRenderNode != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            ((RenderNode) mRenderNode).discardDisplayList();
+        }
+
+        if (mScrollNode != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            ((RenderNode) mScrollNode).discardDisplayList();
+            mScrollValid = false;
+        }
+    }
+
+    /**
+     * Get a cleared canvas for the bitmap. An existing bitmap is reused if it is large enough.
+     *
+     * @param width  Minimum width.
+     * @param height Minimum height.
+     * @return Canvas for the bitmap.
+     */
+    private Canvas beginBitmap(int width, int height) {
+        if (mBitmap == null || mBitmap.getWidth() < width || mBitmap.getHeight() < height) {
+            if (mBitmap != null) {
+                mBitmap.recycle();
+            }
+
+            mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mBitmapCanvas = new Canvas(mBitmap);
+        } else {
+            mBitmap.eraseColor(Color.TRANSPARENT);
+        }
+
+        return mBitmapCanvas;
+    }
+
+    /**
+     * Start recording into the render node. The node is created when first used.
+     *
+     * @param width  Width of the node.
+     * @param height Height of the node.
+     * @return Recording canvas for the node.
+     */
+    @RequiresApi(api = Build.VERSION_CODES.Q)
+    private Canvas beginRecording(int width, int height) {
+        if (mRenderNode == null) {
+            mRenderNode = new RenderNode("MarqueeView");
+        }
+
+        RenderNode renderNode = (RenderNode) mRenderNode;
+        renderNode.setPosition(0, 0, width, height);
+
+        return renderNode.beginRecording(width, height);
+    }
+
+    /**
+     * Finish recording into the render node.
+     */
+    @RequiresApi(api = Build.VERSION_CODES.Q)
+    private void endRecording() {
+        ((RenderNode) mRenderNode).endRecording();
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2021 Christopher Zaborsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.unary.marqueeview;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.text.TextUtils;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * A process-wide cache of text widths and directions shared by every marquee. Widths are kept for
+ * the text together with the paint attributes that affect measurement. The cache is safe to use
+ * from any thread and its size is counted in characters. The limit is lowered while memory runs
+ * low.
+ */
+public final class TextMeasureCache {
+
+    private static final int MAX_SIZE = 32 * 1024; // chars
+    private static final int MAX_TEXT_FRACTION = 8;
+
+    private static final LruCache<Key, Float> sWidths = new TextLruCache<>(MAX_SIZE);
+    private static final LruCache<String, Boolean> sDirections = new TextLruCache<>(MAX_SIZE);
+    private static final Key sLookupKey = new Key();
+
+    private static int sMaxSize = MAX_SIZE;
+    private static volatile int sLimit = MAX_SIZE; // Lowered while memory runs low
+
+    /**
+     * Static methods only.
+     */
+    private TextMeasureCache() {
+    }
+
+    /**
+     * Get the width of the text measured with the paint. It is only measured if not cached.
+     *
+     * @param paint Paint object.
+     * @param text  Text to measure.
+     * @return Text width in pixels.
+     */
+    static float getTextWidth(@NonNull Paint paint, @NonNull String text) {
+        if (text.length() > sLimit / MAX_TEXT_FRACTION) {
+            return paint.measureText(text);
+        }
+
+        Float width;
+
+        // Lookups reuse one key, so a hit does not allocate
+        synchronized (sLookupKey) {
+            sLookupKey.set(paint, text);
+            width = sWidths.get(sLookupKey);
+        }
+
+        if (width == null) {
+            width = paint.measureText(text);
+            sWidths.put(new Key(paint, text), width);
+        }
+
+        return width;
+    }
+
+    /**
+     * Get the base direction of the text. It is only found if not cached.
+     *
+     * @param text Sample text paragraph.
+     * @return True if likely LTR.
+     */
+    static boolean isLtrText(@NonNull String text) {
+        if (text.length() > sLimit / MAX_TEXT_FRACTION) {
+            return MarqueeView.findLtrText(text);
+        }
+
+        Boolean ltrText = sDirections.get(text);
+
+        if (ltrText == null) {
+            ltrText = MarqueeView.findLtrText(text);
+            sDirections.put(text, ltrText);
+        }
+
+        return ltrText;
+    }
+
+    /**
+     * Release memory for the given trim level. The limit is halved while running low and quartered
+     * when critical, so the cache cannot grow back meanwhile, and is restored once the pressure
+     * eases to moderate. Hiding the UI is not pressure and changes nothing. Everything is dropped
+     * once the process is in the background, and the limit is restored for when it returns. Before
+     * API 21 the cache is only trimmed, since its limit cannot be changed.
+     *
+     * @param level Trim level from ComponentCallbacks2.
+     */
+    static synchronized void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            evictAll();
+            setLimit(sMaxSize);
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            // Not memory pressure, so the limit is kept
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            setLimit(Math.max(sMaxSize / 4, 1));
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            setLimit(Math.max(sMaxSize / 2, 1));
+        } else if (sLimit != sMaxSize) {
+            setLimit(sMaxSize);
+        }
+    }
+
+    /**
+     * Get the number of lookups that were found in the cache.
+     *
+     * @return Count of hits.
+     */
+    public static int getHitCount() {
+        return sWidths.hitCount() + sDirections.hitCount();
+    }
+
+    /**
+     * Get the number of lookups that had to be measured.
+     *
+     * @return Count of misses.
+     */
+    public static int getMissCount() {
+        return sWidths.missCount() + sDirections.missCount();
+    }
+
+    /**
+     * Get the number of characters currently held by the cache.
+     *
+     * @return Size in characters.
+     */
+    public static int getSize() {
+        return sWidths.size() + sDirections.size();
+    }
+
+    /**
+     * Get the limit for each of the width and direction caches.
+     *
+     * @return Maximum size in characters.
+     */
+    public static synchronized int getMaxSize() {
+        return sMaxSize;
+    }
+
+    /**
+     * Set the limit for each of the width and direction caches. Texts longer than an eighth of it
+     * are not cached. Any lower limit from trimming memory is lifted.
+     *
+     * @param maxSize Maximum size in characters.
+     */
+    public static synchronized void setMaxSize(int maxSize) {
+        sMaxSize = Math.max(maxSize, 1);
+        setLimit(sMaxSize);
+    }
+
+    /**
+     * Change the limit the caches are held to. It must be called with the class locked.
+     *
+     * @param limit Limit in characters.
+     */
+    private static void setLimit(int limit) {
+        sLimit = limit;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            sWidths.resize(limit);
+            sDirections.resize(limit);
+        } else {
+            sWidths.trimToSize(limit);
+            sDirections.trimToSize(limit);
+        }
+    }
+
+    /**
+     * Remove everything from the cache.
+     */
+    public static void evictAll() {
+        sWidths.evictAll();
+        sDirections.evictAll();
+    }
+
+    /**
+     * An LRU cache sized by the length of the text in each entry.
+     *
+     * @param <K> Type of the key. This is the text or a key containing it.
+     * @param <V> Type of the cached value.
+     */
+    private static final class TextLruCache<K, V> extends LruCache<K, V> {
+
+        /**
+         * Create a cache of the given size.
+         *
+         * @param maxSize Maximum size in characters.
+         */
+        TextLruCache(int maxSize) {
+            super(maxSize);
+        }
+
+        @Override
+        protected int sizeOf(@NonNull K key, @NonNull V value) {
+            return (key instanceof Key ? ((Key) key).mText : (String) key).length() + 1;
+        }
+    }
+
+    /**
+     * The text and the paint attributes that affect its width.
+     */
+    private static final class Key {
+
+        private String mText;
+        private float mTextSize;
+        private float mTextScaleX;
+        private float mTextSkewX;
+        private float mLetterSpacing;
+        private int mFlags;
+        private Typeface mTypeface;
+        private Locale mTextLocale;
+        private String mFontFeatureSettings;
+        private boolean mElegantTextHeight;
+        private Object mTextLocales; // LocaleList on API 24+
+        private String mFontVariationSettings;
+        private float mWordSpacing;
+        private int mHashCode;
+
+        /**
+         * Create an empty key for lookups.
+         */
+        Key() {
+        }
+
+        /**
+         * Take a snapshot of the paint attributes.
+         *
+         * @param paint Paint object.
+         * @param text  Text to measure.
+         */
+        Key(Paint paint, String text) {
+            set(paint, text);
+        }
+
+        /**
+         * Take a snapshot of the paint attributes. The hash is found by hand, so this does not
+         * allocate.
+         *
+         * @param paint Paint object.
+         * @param text  Text to measure.
+         */
+        void set(Paint paint, String text) {
+            mText = text;
+            mTextSize = paint.getTextSize();
+            mTextScaleX = paint.getTextScaleX();
+            mTextSkewX = paint.getTextSkewX();
+            mFlags = paint.getFlags();
+            mTypeface = paint.getTypeface();
+            mTextLocale = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 ? paint.getTextLocale() : null;
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                mLetterSpacing = paint.getLetterSpacing();
+                mFontFeatureSettings = paint.getFontFeatureSettings();
+                mElegantTextHeight = paint.isElegantTextHeight();
+            }
+
+            mTextLocales = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N ? paint.getTextLocales() : null;
+            mFontVariationSettings = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                    ? paint.getFontVariationSettings() : null;
+            mWordSpacing = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q ? paint.getWordSpacing() : 0;
+
+            int hashCode = mText.hashCode();
+            hashCode = 31 * hashCode + Float.floatToIntBits(mTextSize);
+            hashCode = 31 * hashCode + Float.floatToIntBits(mTextScaleX);
+            hashCode = 31 * hashCode + Float.floatToIntBits(mTextSkewX);
+            hashCode = 31 * hashCode + Float.floatToIntBits(mLetterSpacing);
+            hashCode = 31 * hashCode + mFlags;
+            hashCode = 31 * hashCode + (mTypeface != null ? mTypeface.hashCode() : 0);
+            hashCode = 31 * hashCode + (mTextLocale != null ? mTextLocale.hashCode() : 0);
+            hashCode = 31 * hashCode + (mFontFeatureSettings != null ? mFontFeatureSettings.hashCode() : 0);
+            hashCode = 31 * hashCode + (mElegantTextHeight ? 1 : 0);
+            hashCode = 31 * hashCode + (mTextLocales != null ? mTextLocales.hashCode() : 0);
+            hashCode = 31 * hashCode + (mFontVariationSettings != null ? mFontVariationSettings.hashCode() : 0);
+            hashCode = 31 * hashCode + Float.floatToIntBits(mWordSpacing);
+
+            mHashCode = hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key key = (Key) o;
+
+            return mHashCode == key.mHashCode
+                    && mTextSize == key.mTextSize
+                    && mTextScaleX == key.mTextScaleX
+                    && mTextSkewX == key.mTextSkewX
+                    && mLetterSpacing == key.mLetterSpacing
+                    && mFlags == key.mFlags
+                    && mTypeface == key.mTypeface
+                    && (mTextLocale == null ? key.mTextLocale == null : mTextLocale.equals(key.mTextLocale))
+                    && TextUtils.equals(mFontFeatureSettings, key.mFontFeatureSettings)
+                    && mElegantTextHeight == key.mElegantTextHeight
+                    && (mTextLocales == null ? key.mTextLocales == null : mTextLocales.equals(key.mTextLocales))
+                    && TextUtils.equals(mFontVariationSettings, key.mFontVariationSettings)
+                    && mWordSpacing == key.mWordSpacing
+                    && mText.equals(key.mText);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    }
+}
@@ -0,0 +1,537 @@
+/*
+ * Copyright 2021 Christopher Zaborsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.unary.marqueeview;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.text.BoringLayout;
+import android.text.Layout;
+import android.text.PrecomputedText;
+import android.text.Spanned;
+import android.text.StaticLayout;
+import android.text.TextUtils;
+import android.text.TextPaint;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.text.Bidi;
+import java.util.Locale;
+
+/**
+ * A snapshot of the text measurements used by the marquee. Values are computed once when the text
+ * or paint changes and are only read while drawing. Styled text is also laid out once into a single
+ * line layout that is then only drawn.
+ */
+final class TextMetrics {
+
+    private String mText;
+    private String mSeparator;
+    private float mTextWidth;
+    private float mSegmentWidth;
+    private float mSeparatorWidth;
+    private boolean mSeparatorVisible;
+    private float mFontHeight;
+    private float mFontTop;
+    private boolean mLtrText;
+    private boolean mUnidirectional;
+    private float[] mAdvances;
+    private Spanned mSpanned;
+    private Layout mLayout;
+    private float mBaselineShift;
+
+    // Paint attributes that affect measurement
+    private float mTextSize;
+    private float mTextScaleX;
+    private float mLetterSpacing;
+    private int mFlags;
+    private Typeface mTypeface;
+    private Locale mTextLocale;
+    private String mFontFeatureSettings;
+    private boolean mElegantTextHeight;
+    private Object mTextLocales; // LocaleList on API 24+
+    private String mFontVariationSettings;
+    private float mWordSpacing;
+
+    /**
+     * Measure the text with the given paint and keep a copy of the paint attributes used.
+     *
+     * @param paint     Paint object.
+     * @param text      Text to measure.
+     * @param separator Separator that follows the text in each period.
+     */
+    void measure(@NonNull Paint paint, @NonNull String text, @NonNull String separator) {
+        measure(paint, text, separator, MarqueeView.getTextWidth(paint, text),
+                MarqueeView.getTextWidth(paint, text.concat(separator)));
+    }
+
+    /**
+     * Keep the given text widths and measure everything else with the paint.
+     *
+     * @param paint        Paint object.
+     * @param text         Text that was measured.
+     * @param separator    Separator that follows the text in each period.
+     * @param textWidth    Width of the text alone.
+     * @param segmentWidth Width of the text followed by the separator.
+     */
+    private void measure(@NonNull Paint paint, @NonNull String text, @NonNull String separator,
+                         float textWidth, float segmentWidth) {
+        mText = text;
+        mSeparator = separator;
+        mSpanned = null;
+        mLayout = null;
+        mBaselineShift = 0;
+        mTextWidth = textWidth;
+        mSegmentWidth = segmentWidth;
+        mSeparatorWidth = segmentWidth - textWidth;
+        mSeparatorVisible = separator.trim().length() > 0;
+        mFontHeight = MarqueeView.getFontHeight(paint);
+        mFontTop = paint.getFontMetrics().top;
+        mLtrText = MarqueeView.isLtrText(text);
+
+        Bidi bidi = new Bidi(text, Bidi.DIRECTION_DEFAULT_LEFT_TO_RIGHT);
+        mUnidirectional = bidi.isLeftToRight() || bidi.isRightToLeft();
+
+        // Running total of the character advances
+        int count = text.length();
+
+        if (mAdvances == null || mAdvances.length < count + 1) {
+            mAdvances = new float[count + 1];
+        }
+
+        paint.getTextWidths(text, 0, count, mAdvances);
+
+        float sum = 0;
+        for (int i = 0; i < count; i++) {
+            float advance = mAdvances[i];
+            mAdvances[i] = sum;
+            sum += advance;
+        }
+
+        mAdvances[count] = sum;
+
+        mTextSize = paint.getTextSize();
+        mTextScaleX = paint.getTextScaleX();
+        mFlags = paint.getFlags();
+        mTypeface = paint.getTypeface();
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            mTextLocale = paint.getTextLocale();
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            mLetterSpacing = paint.getLetterSpacing();
+            mFontFeatureSettings = paint.getFontFeatureSettings();
+            mElegantTextHeight = paint.isElegantTextHeight();
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            mTextLocales = paint.getTextLocales();
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            mFontVariationSettings = paint.getFontVariationSettings();
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            mWordSpacing = paint.getWordSpacing();
+        }
+    }
+
+    /**
+     * Lay out the styled text with the given paint and keep a copy of the paint attributes used. The
+     * spans must not change afterwards.
+     *
+     * @param paint     Paint object.
+     * @param spanned   Styled text to measure.
+     * @param separator Separator that follows the text in each period.
+     */
+    void measure(@NonNull Paint paint, @NonNull Spanned spanned, @NonNull String separator) {
+        TextPaint textPaint = new TextPaint(paint);
+        float textWidth = Layout.getDesiredWidth(spanned, textPaint);
+
+        measure(paint, spanned.toString(), separator, textWidth,
+                textWidth + MarqueeView.getTextWidth(paint, separator));
+
+        int width = (int) Math.ceil(textWidth);
+        BoringLayout.Metrics boring = BoringLayout.isBoring(spanned, textPaint);
+
+        if (boring != null) {
+            mLayout = BoringLayout.make(spanned, textPaint, width, Layout.Alignment.ALIGN_NORMAL,
+                    1, 0, boring, false);
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            mLayout = StaticLayout.Builder.obtain(spanned, 0, spanned.length(), textPaint, width)
+                    .setIncludePad(false)
+                    .setMaxLines(1)
+                    .build();
+        } else {
+            mLayout = new StaticLayout(spanned, textPaint, width, Layout.Alignment.ALIGN_NORMAL, 1, 0, false);
+        }
+
+        mSpanned = spanned;
+        mUnidirectional = false;
+
+        // Spans may be larger than the font
+        float ascent = -paint.getFontMetrics().ascent;
+        mBaselineShift = Math.max(0, mLayout.getLineBaseline(0) - ascent);
+        mFontHeight = Math.max(mFontHeight, mLayout.getHeight());
+        mFontTop = Math.min(mFontTop, -mLayout.getLineBaseline(0));
+    }
+
+    /**
+     * Measure only the characters added to the end of the measured text. The base direction of the
+     * text is kept and the paint must still match the snapshot.
+     *
+     * @param paint Paint object.
+     * @param text  Measured text followed by the new characters.
+     * @param start Index of the first new character.
+     */
+    void append(@NonNull Paint paint, @NonNull String text, int start) {
+        int count = text.length();
+
+        if (mAdvances.length < count + 1) {
+            float[] advances = new float[Math.max(count + 1, mAdvances.length * 2)];
+            System.arraycopy(mAdvances, 0, advances, 0, start + 1);
+            mAdvances = advances;
+        }
+
+        float[] widths = new float[count - start];
+        paint.getTextWidths(text, start, count, widths);
+
+        float sum = mAdvances[start];
+        for (int i = start; i < count; i++) {
+            mAdvances[i] = sum;
+            sum += widths[i - start];
+        }
+
+        mAdvances[count] = sum;
+
+        // Mixed if the new text changes direction
+        if (mUnidirectional) {
+            Bidi bidi = new Bidi(text.substring(start),
+                    mLtrText ? Bidi.DIRECTION_LEFT_TO_RIGHT : Bidi.DIRECTION_RIGHT_TO_LEFT);
+            mUnidirectional = mLtrText ? bidi.isLeftToRight() : bidi.isRightToLeft();
+        }
+
+        mText = text;
+        mTextWidth = sum;
+        mSegmentWidth = sum + mSeparatorWidth;
+    }
+
+    /**
+     * Drop characters from the start of the measured text. The remaining advances are shifted and
+     * nothing is measured again.
+     *
+     * @param text  Measured text without the dropped characters.
+     * @param count Number of characters dropped.
+     */
+    void removeStart(@NonNull String text, int count) {
+        int length = text.length();
+        float removed = mAdvances[count];
+
+        for (int i = 0; i <= length; i++) {
+            mAdvances[i] = mAdvances[i + count] - removed;
+        }
+
+        mText = text;
+        mTextWidth = mAdvances[length];
+        mSegmentWidth = mTextWidth + mSeparatorWidth;
+    }
+
+    /**
+     * Create new metrics away from the UI thread. PrecomputedText is used to shape the text when
+     * its widths are available. The paint must not be shared with another thread.
+     *
+     * @param paint     Paint object.
+     * @param text      Text to measure.
+     * @param spanned   Styled text to lay out instead. This may be null.
+     * @param separator Separator that follows the text in each period.
+     * @return Metrics for the text.
+     */
+    @WorkerThread
+    @NonNull
+    static TextMetrics prepare(@NonNull Paint paint, @NonNull String text, @Nullable Spanned spanned,
+                               @NonNull String separator) {
+        TextMetrics textMetrics = new TextMetrics();
+
+        if (spanned != null) {
+            textMetrics.measure(paint, spanned, separator);
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            PrecomputedText.Params params = new PrecomputedText.Params.Builder(new TextPaint(paint)).build();
+            PrecomputedText precomputedText = PrecomputedText.create(text.concat(separator), params);
+
+            textMetrics.measure(paint, text, separator, precomputedText.getWidth(0, text.length()),
+                    precomputedText.getWidth(0, precomputedText.length()));
+        } else {
+            textMetrics.measure(paint, text, separator);
+        }
+
+        return textMetrics;
+    }
+
+    /**
+     * Check if the snapshot still matches the given text and paint. This does not allocate and is
+     * cheap enough to be called for every frame.
+     *
+     * @param paint     Paint object.
+     * @param text      Text to compare.
+     * @param separator Separator to compare.
+     * @return True if the measurements can be reused.
+     */
+    boolean isValid(@NonNull Paint paint, @NonNull String text, @NonNull String separator) {
+        return isValid(paint, text, null, separator);
+    }
+
+    /**
+     * Check if the snapshot still matches the given text and paint. Styled text must be the same
+     * instance that was laid out.
+     *
+     * @param paint     Paint object.
+     * @param text      Text to compare.
+     * @param spanned   Styled text to compare. This may be null.
+     * @param separator Separator to compare.
+     * @return True if the measurements can be reused.
+     */
+    boolean isValid(@NonNull Paint paint, @NonNull String text, @Nullable Spanned spanned,
+                    @NonNull String separator) {
+        if (spanned != mSpanned
+                || !text.equals(mText)
+                || !separator.equals(mSeparator)
+                || paint.getTextSize() != mTextSize
+                || paint.getTextScaleX() != mTextScaleX
+                || paint.getFlags() != mFlags
+                || paint.getTypeface() != mTypeface) {
+            return false;
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            if (paint.getTextLocale() != mTextLocale) return false;
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            if (paint.getLetterSpacing() != mLetterSpacing
+                    || paint.isElegantTextHeight() != mElegantTextHeight
+                    || !TextUtils.equals(paint.getFontFeatureSettings(), mFontFeatureSettings)) {
+                return false;
+            }
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            if (!paint.getTextLocales().equals(mTextLocales)) return false;
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            if (!TextUtils.equals(paint.getFontVariationSettings(), mFontVariationSettings)) return false;
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            return paint.getWordSpacing() == mWordSpacing;
+        }
+
+        return true;
+    }
+
+    /**
+     * Draw the whole text at the given position. Styled text is drawn from its layout using the
+     * current color and effects of the paint.
+     *
+     * @param canvas   Canvas to draw on.
+     * @param paint    Paint for the text.
+     * @param x        Left position of the text.
+     * @param baseline Baseline of the text.
+     */
+    void draw(@NonNull Canvas canvas, @NonNull Paint paint, float x, float baseline) {
+        if (mLayout == null) {
+            canvas.drawText(mText, x, baseline, paint);
+            return;
+        }
+
+        TextPaint layoutPaint = mLayout.getPaint();
+
+        if (layoutPaint.getColor() != paint.getColor()) {
+            layoutPaint.setColor(paint.getColor());
+        }
+
+        // Effects may have been removed since
+        MarqueeView.copyEffects(paint, layoutPaint);
+
+        int saveCount = canvas.save();
+        canvas.translate(x, baseline - mLayout.getLineBaseline(0));
+        mLayout.draw(canvas);
+        canvas.restoreToCount(saveCount);
+    }
+
+    /**
+     * Draw the separator that follows the text in each period. Nothing is drawn for whitespace.
+     *
+     * @param canvas   Canvas to draw on.
+     * @param paint    Paint for the text.
+     * @param x        Left position of the separator.
+     * @param baseline Baseline of the text.
+     */
+    void drawSeparator(@NonNull Canvas canvas, @NonNull Paint paint, float x, float baseline) {
+        if (mSeparatorVisible) {
+            canvas.drawText(mSeparator, x, baseline, paint);
+        }
+    }
+
+    /**
+     * Distance the baseline is moved down so that styled text larger than the font fits.
+     *
+     * @return Baseline shift in pixels.
+     */
+    float getBaselineShift() {
+        return mBaselineShift;
+    }
+
+    /**
+     * Width of the text alone.
+     *
+     * @return Text width in pixels.
+     */
+    float getTextWidth() {
+        return mTextWidth;
+    }
+
+    /**
+     * Width of one scrolling period. This is the text followed by the separator.
+     *
+     * @return Segment width in pixels.
+     */
+    float getSegmentWidth() {
+        return mSegmentWidth;
+    }
+
+    /**
+     * Width of the separator that follows the text.
+     *
+     * @return Separator width in pixels.
+     */
+    float getSeparatorWidth() {
+        return mSeparatorWidth;
+    }
+
+    /**
+     * Total font height used to measure the view.
+     *
+     * @return Font height in pixels.
+     */
+    float getFontHeight() {
+        return mFontHeight;
+    }
+
+    /**
+     * Maximum distance above the baseline for the font. This is a negative value.
+     *
+     * @return Font top in pixels.
+     */
+    float getFontTop() {
+        return mFontTop;
+    }
+
+    /**
+     * Distance from the start of the text to the given character. Characters drawn as part of the
+     * previous one have no advance of their own.
+     *
+     * @param index Character index. This may be the text length.
+     * @return Distance in pixels.
+     */
+    float getAdvance(int index) {
+        return mAdvances[index];
+    }
+
+    /**
+     * Find the first character to draw so that everything from the given distance is covered. The
+     * index never splits a character from the ones drawn with it.
+     *
+     * @param distance Distance from the start of the text.
+     * @return Character index.
+     */
+    int getStartIndex(float distance) {
+        int count = mText.length();
+        int low = 0;
+        int high = count;
+
+        // Last advance at or before the distance
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+
+            if (mAdvances[mid] <= distance) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        while (low > 0 && low < count && mAdvances[low + 1] == mAdvances[low]) {
+            low--;
+        }
+
+        return low;
+    }
+
+    /**
+     * Find the character after the last one to draw so that everything up to the given distance is
+     * covered. The index never splits a character from the ones drawn with it.
+     *
+     * @param distance Distance from the start of the text.
+     * @return Character index.
+     */
+    int getEndIndex(float distance) {
+        int count = mText.length();
+        int low = 0;
+        int high = count;
+
+        // First advance at or after the distance
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (mAdvances[mid] >= distance) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+
+        while (low < count && mAdvances[low + 1] == mAdvances[low]) {
+            low++;
+        }
+
+        return low;
+    }
+
+    /**
+     * Check if the text has a single direction. Only then are the characters laid out in order and
+     * can be drawn in parts.
+     *
+     * @return True if not mixed.
+     */
+    boolean isUnidirectional() {
+        return mUnidirectional;
+    }
+
+    /**
+     * Base direction of the text.
+     *
+     * @return True if likely LTR.
+     */
+    boolean isLtrText() {
+        return mLtrText;
+    }
+}
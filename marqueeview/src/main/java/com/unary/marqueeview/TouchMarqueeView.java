@@ -15,26 +15,38 @@
  */
 package com.unary.marqueeview;
 
-import android.animation.Animator;
-import android.animation.ValueAnimator;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.os.Build;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.ViewConfiguration;
+import android.view.ViewParent;
 
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 
 /**
  * A styleable marquee text widget extended from MarqueeView that adds simple touch interaction.
- * Note that this is not extended from TextView.
+ * Touching pauses the scroll, dragging scrubs the text and releasing flings it before the scroll
+ * continues from wherever the text came to rest. Note that this is not extended from TextView.
  */
 public class TouchMarqueeView extends MarqueeView {
 
-    private boolean mPaused;
-    private long mCurrentPlayTime;
-    private long mDuration;
+    private static final float FLING_FRICTION = 4.2f; // per second
+    private static final float NANOS_PER_SECOND = 1000000000f;
+
+    private VelocityTracker mVelocityTracker;
+    private int mTouchSlop;
+    private int mMinimumVelocity;
+    private int mMaximumVelocity;
+    private float mDownX;
+    private float mLastX;
+    private boolean mDragging;
+    private boolean mFlinging;
+    private float mFlingVelocity;
+    private long mFlingTime;
 
     /**
      * Simple constructor to use when creating the view from code.
@@ -43,6 +55,7 @@ public class TouchMarqueeView extends MarqueeView {
      */
     public TouchMarqueeView(Context context) {
         super(context);
+        init(context);
     }
 
     /**
@@ -53,6 +66,7 @@ public class TouchMarqueeView extends MarqueeView {
      */
     public TouchMarqueeView(Context context, @Nullable AttributeSet attrs) {
         super(context, attrs);
+        init(context);
     }
 
     /**
@@ -64,6 +78,7 @@ public class TouchMarqueeView extends MarqueeView {
      */
     public TouchMarqueeView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
+        init(context);
     }
 
     /**
@@ -77,6 +92,46 @@ public class TouchMarqueeView extends MarqueeView {
     @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
     public TouchMarqueeView(Context context, @Nullable AttributeSet attrs, int defStyleAttr, int defStyleRes) {
         super(context, attrs, defStyleAttr, defStyleRes);
+        init(context);
+    }
+
+    /**
+     * Initialize the touch thresholds for the display.
+     *
+     * @param context Context given for the view. This determines the resources and theme.
+     */
+    private void init(Context context) {
+        ViewConfiguration configuration = ViewConfiguration.get(context);
+
+        mTouchSlop = configuration.getScaledTouchSlop();
+        mMinimumVelocity = configuration.getScaledMinimumFlingVelocity();
+        mMaximumVelocity = configuration.getScaledMaximumFlingVelocity();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+
+        // Not left paused by a fling
+        if (mFlinging) {
+            stopFling();
+            resume();
+        }
+
+        if (mVelocityTracker != null) {
+            mVelocityTracker.recycle();
+            mVelocityTracker = null;
+        }
+    }
+
+    @Override
+    protected void resume() {
+        // Scrubbed text goes back into its group
+        if (getGroup() != null) {
+            setOffset(0);
+        }
+
+        super.resume();
     }
 
     @SuppressLint("ClickableViewAccessibility")
@@ -84,11 +139,56 @@ public class TouchMarqueeView extends MarqueeView {
     public boolean onTouchEvent(MotionEvent event) {
         super.onTouchEvent(event);
 
-        switch (event.getAction()) {
+        // The tracker is reused for every gesture
+        if (mVelocityTracker == null) {
+            mVelocityTracker = VelocityTracker.obtain();
+        }
+
+        switch (event.getActionMasked()) {
             case MotionEvent.ACTION_DOWN:
+                stopFling();
                 pause();
+
+                mVelocityTracker.clear();
+                mVelocityTracker.addMovement(event);
+                mDownX = mLastX = event.getX();
+                mDragging = false;
+                break;
+            case MotionEvent.ACTION_MOVE:
+                mVelocityTracker.addMovement(event);
+                float x = event.getX();
+
+                if (!mDragging && Math.abs(x - mDownX) > mTouchSlop && isScrollable()) {
+                    mDragging = true;
+                    mLastX = x;
+
+                    ViewParent parent = getParent();
+
+                    if (parent != null) {
+                        parent.requestDisallowInterceptTouchEvent(true);
+                    }
+                }
+
+                if (mDragging) {
+                    scrollBy(x - mLastX);
+                    mLastX = x;
+                }
                 break;
             case MotionEvent.ACTION_UP:
+                mVelocityTracker.addMovement(event);
+                mVelocityTracker.computeCurrentVelocity(1000, mMaximumVelocity);
+                float velocity = mVelocityTracker.getXVelocity();
+
+                if (mDragging && Math.abs(velocity) > Math.max(mMinimumVelocity, getScrollVelocity())) {
+                    startFling(velocity);
+                } else {
+                    resume();
+                }
+
+                mDragging = false;
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                mDragging = false;
                 resume();
                 break;
         }
@@ -96,42 +196,74 @@ public class TouchMarqueeView extends MarqueeView {
         return true;
     }
 
+    @Override
+    boolean onFrame(long frameTimeNanos) {
+        if (!mFlinging) return false;
+
+        // Start from the first frame
+        if (mFlingTime != 0) {
+            float decay = (float) Math.exp(-FLING_FRICTION * (frameTimeNanos - mFlingTime) / NANOS_PER_SECOND);
+
+            scrollBy(mFlingVelocity * (1 - decay) / FLING_FRICTION);
+            mFlingVelocity *= decay;
+
+            // Hand back once slower than the scroll
+            if (Math.abs(mFlingVelocity) <= getScrollVelocity()) {
+                mFlinging = false;
+                resume();
+
+                return false;
+            }
+        }
+
+        mFlingTime = frameTimeNanos;
+
+        return true;
+    }
+
     /**
-     * Pause animator and provide some backwards compatibility if instance of ValueAnimator.
+     * Check if the text is being flung after a drag.
+     *
+     * @return True if flinging.
      */
-    protected void pause() {
-        Animator animator = getTextAnimator();
-        if (animator == null) return;
+    public boolean isFlinging() {
+        return mFlinging;
+    }
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
-            animator.pause();
-            return;
-        }
+    /**
+     * Move the text by the distance in the direction of the touch. The offset is kept within one
+     * period so it never loses precision.
+     *
+     * @param distance Distance in pixels.
+     */
+    private void scrollBy(float distance) {
+        float width = getSegmentWidth();
+        float offset = getOffset() + distance;
 
-        if (!mPaused && animator instanceof ValueAnimator) {
-            mPaused = true;
-            mCurrentPlayTime = ((ValueAnimator) animator).getCurrentPlayTime();
-            mDuration = animator.getDuration();
-            animator.setDuration(0);
-        }
+        setOffset(width > 0 ? offset % width : offset);
     }
 
     /**
-     * Resume animator and provide some backwards compatibility if instance of ValueAnimator.
+     * Start decaying the velocity from the frame callback of the scroll. The scroll stays paused
+     * until the fling has slowed down.
+     *
+     * @param velocity Velocity in pixels per second.
      */
-    protected void resume() {
-        Animator animator = getTextAnimator();
-        if (animator == null) return;
+    private void startFling(float velocity) {
+        mFlinging = true;
+        mFlingVelocity = velocity;
+        mFlingTime = 0;
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
-            animator.resume();
-            return;
-        }
+        requestFrames();
+    }
 
-        if (mPaused && animator instanceof ValueAnimator) {
-            animator.setDuration(mDuration);
-            ((ValueAnimator) animator).setCurrentPlayTime(mCurrentPlayTime);
-            mPaused = false;
+    /**
+     * Stop the fling where it is. The scroll is left paused.
+     */
+    private void stopFling() {
+        if (mFlinging) {
+            mFlinging = false;
+            cancelFrames();
         }
     }
-}
\ No newline at end of file
+}